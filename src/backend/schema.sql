@@ -86,7 +86,13 @@ CREATE POLICY admin_updatePort_policy ON port FOR UPDATE USING (current_setting(
 
 CREATE TABLE chats(
                       company VARCHAR (255) PRIMARY KEY,
+                      -- messages in a row from the last sender, i.e. unread by the other side
                       unread INT DEFAULT 0 NOT NULL,
+                      -- summary of the last message, kept by chat_summary_trigger
+                      last_message_id INT,
+                      last_message_time TIMESTAMPTZ,
+                      last_message_sender VARCHAR (255),
+                      last_message_body VARCHAR (200),
                       FOREIGN KEY (company) REFERENCES companies(username) ON UPDATE CASCADE
 );
 ALTER TABLE chats ENABLE ROW LEVEL SECURITY;
@@ -109,6 +115,26 @@ CREATE POLICY company_selectMessage_policy ON messages FOR SELECT USING (current
 CREATE POLICY company_insertMessage_policy ON messages FOR INSERT WITH CHECK (current_setting('role') = 'company' AND company = current_setting('username') AND sender = current_setting('username'));
 CREATE POLICY admin_selectMessage_policy ON messages FOR SELECT USING (current_setting('role') = 'admin');
 CREATE POLICY admin_insertMessage_policy ON messages FOR INSERT WITH CHECK (current_setting('role') = 'admin');
+-- message history is paged by id within a chat
+CREATE INDEX messages_company_id_idx ON messages (company, message_id);
+CREATE INDEX chats_last_message_time_idx ON chats (last_message_time DESC NULLS LAST);
+
+-- runs as the owner, the inserting company or admin may not update chats
+CREATE OR REPLACE FUNCTION chat_summary_maintain()
+RETURNS TRIGGER AS $$
+BEGIN
+UPDATE chats SET
+    unread = CASE WHEN last_message_sender = NEW.sender THEN unread + 1 ELSE 1 END,
+    last_message_id = NEW.message_id,
+    last_message_time = NEW.time,
+    last_message_sender = NEW.sender,
+    last_message_body = LEFT(NEW.body, 200)
+WHERE company = NEW.company;
+RETURN NULL;
+END;
+$$ LANGUAGE plpgsql SECURITY DEFINER SET search_path = saved4, pg_temp;
+
+CREATE TRIGGER chat_summary_trigger AFTER INSERT ON messages FOR EACH ROW EXECUTE PROCEDURE chat_summary_maintain();
 
 CREATE TABLE containers(
                            container_id SERIAL PRIMARY KEY,
@@ -170,6 +196,112 @@ CREATE POLICY admin_insertOrder_policy ON orders FOR INSERT WITH CHECK (current_
 CREATE POLICY admin_updateOrder_policy ON orders FOR UPDATE USING (current_setting('role') = 'admin');
 CREATE POLICY system_selectOrder_policy ON orders FOR SELECT USING (current_setting('role') = 'system');
 CREATE POLICY system_updateOrder_policy ON orders FOR UPDATE USING (current_setting('role') = 'system');
+-- keyset pagination walks orders by descending id within the usual filters
+CREATE INDEX orders_order_for_id_idx ON orders (order_for, order_id DESC);
+CREATE INDEX orders_status_id_idx ON orders (status, order_id DESC);
+-- the calendar lists the orders whose time window overlaps the visible dates
+CREATE INDEX orders_tw_end_idx ON orders (tw_end);
+-- the lifecycle pass picks the scheduled orders past their departure and the undergoing ones past their ETA
+CREATE INDEX orders_due_start_idx ON orders (departure_time) WHERE status = 'scheduled';
+CREATE INDEX orders_due_finish_idx ON orders (eta) WHERE status = 'undergoing';
+
+-- per day, company and vehicle (0 for none) totals of the orders made that day, kept current by
+-- order_daily_stats_trigger so analytics never has to scan orders
+CREATE TABLE order_daily_stats(
+	day DATE NOT NULL,
+	company VARCHAR(255) NOT NULL,
+	vehicle_id INT NOT NULL,
+	total_orders INT DEFAULT 0 NOT NULL,
+	created_orders INT DEFAULT 0 NOT NULL,
+	scheduled_orders INT DEFAULT 0 NOT NULL,
+	undergoing_orders INT DEFAULT 0 NOT NULL,
+	completed_orders INT DEFAULT 0 NOT NULL,
+	canceled_orders INT DEFAULT 0 NOT NULL,
+	freight_value DECIMAL(16, 2) DEFAULT 0 NOT NULL,
+	-- the remaining columns only cover completed orders
+	freight_weight DECIMAL(14, 2) DEFAULT 0 NOT NULL,
+	weighed_orders INT DEFAULT 0 NOT NULL,
+	waiting_minutes DOUBLE PRECISION DEFAULT 0 NOT NULL,
+	waited_orders INT DEFAULT 0 NOT NULL,
+	traveling_hours DOUBLE PRECISION DEFAULT 0 NOT NULL,
+	shared_orders INT DEFAULT 0 NOT NULL,
+	machinery_orders INT DEFAULT 0 NOT NULL,
+	food_orders INT DEFAULT 0 NOT NULL,
+	chemical_orders INT DEFAULT 0 NOT NULL,
+	textile_orders INT DEFAULT 0 NOT NULL,
+	electronic_orders INT DEFAULT 0 NOT NULL,
+	other_orders INT DEFAULT 0 NOT NULL,
+	PRIMARY KEY (day, company, vehicle_id));
+CREATE INDEX order_daily_stats_company_idx ON order_daily_stats (company, day);
+
+-- adds (sign = 1) or removes (sign = -1) the contribution of one order to its rollup row
+CREATE OR REPLACE FUNCTION order_daily_stats_apply(o orders, sign INT)
+RETURNS VOID AS $$
+DECLARE
+    done BOOLEAN := o.status = 'completed';
+    kind freight_type := COALESCE(o.freight_type, 'other');
+BEGIN
+INSERT INTO order_daily_stats AS s VALUES (
+    o.made_at::date, o.order_for, COALESCE(o.vehicle_id, 0), sign,
+    CASE WHEN o.status = 'created' THEN sign ELSE 0 END,
+    CASE WHEN o.status = 'scheduled' THEN sign ELSE 0 END,
+    CASE WHEN o.status = 'undergoing' THEN sign ELSE 0 END,
+    CASE WHEN done THEN sign ELSE 0 END,
+    CASE WHEN o.status = 'canceled' THEN sign ELSE 0 END,
+    sign * COALESCE(o.freight_value, 0),
+    CASE WHEN done THEN sign * COALESCE(o.freight_weight, 0) ELSE 0 END,
+    CASE WHEN done AND o.freight_weight IS NOT NULL THEN sign ELSE 0 END,
+    CASE WHEN done AND o.departure_time IS NOT NULL
+         THEN sign * EXTRACT(EPOCH FROM (o.departure_time - o.tw_start)) / 60 ELSE 0 END,
+    CASE WHEN done AND o.departure_time IS NOT NULL THEN sign ELSE 0 END,
+    CASE WHEN done THEN sign * COALESCE(EXTRACT(EPOCH FROM (o.eta - o.made_at)) / 3600, 0) ELSE 0 END,
+    CASE WHEN done AND o.is_shared THEN sign ELSE 0 END,
+    CASE WHEN done AND kind = 'machinery' THEN sign ELSE 0 END,
+    CASE WHEN done AND kind = 'food' THEN sign ELSE 0 END,
+    CASE WHEN done AND kind = 'chemical' THEN sign ELSE 0 END,
+    CASE WHEN done AND kind = 'textile' THEN sign ELSE 0 END,
+    CASE WHEN done AND kind = 'electronic' THEN sign ELSE 0 END,
+    CASE WHEN done AND kind = 'other' THEN sign ELSE 0 END)
+ON CONFLICT (day, company, vehicle_id) DO UPDATE SET
+    total_orders = s.total_orders + EXCLUDED.total_orders,
+    created_orders = s.created_orders + EXCLUDED.created_orders,
+    scheduled_orders = s.scheduled_orders + EXCLUDED.scheduled_orders,
+    undergoing_orders = s.undergoing_orders + EXCLUDED.undergoing_orders,
+    completed_orders = s.completed_orders + EXCLUDED.completed_orders,
+    canceled_orders = s.canceled_orders + EXCLUDED.canceled_orders,
+    freight_value = s.freight_value + EXCLUDED.freight_value,
+    freight_weight = s.freight_weight + EXCLUDED.freight_weight,
+    weighed_orders = s.weighed_orders + EXCLUDED.weighed_orders,
+    waiting_minutes = s.waiting_minutes + EXCLUDED.waiting_minutes,
+    waited_orders = s.waited_orders + EXCLUDED.waited_orders,
+    traveling_hours = s.traveling_hours + EXCLUDED.traveling_hours,
+    shared_orders = s.shared_orders + EXCLUDED.shared_orders,
+    machinery_orders = s.machinery_orders + EXCLUDED.machinery_orders,
+    food_orders = s.food_orders + EXCLUDED.food_orders,
+    chemical_orders = s.chemical_orders + EXCLUDED.chemical_orders,
+    textile_orders = s.textile_orders + EXCLUDED.textile_orders,
+    electronic_orders = s.electronic_orders + EXCLUDED.electronic_orders,
+    other_orders = s.other_orders + EXCLUDED.other_orders;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION order_daily_stats_maintain()
+RETURNS TRIGGER AS $$
+BEGIN
+IF TG_OP IN ('UPDATE', 'DELETE') THEN
+    PERFORM order_daily_stats_apply(OLD, -1);
+END IF;
+IF TG_OP IN ('INSERT', 'UPDATE') THEN
+    PERFORM order_daily_stats_apply(NEW, 1);
+END IF;
+RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER order_daily_stats_trigger AFTER INSERT OR DELETE OR UPDATE OF
+    made_at, order_for, vehicle_id, status, freight_value, freight_type, freight_weight,
+    departure_time, tw_start, eta, is_shared
+    ON orders FOR EACH ROW EXECUTE PROCEDURE order_daily_stats_maintain();
 
 CREATE TABLE order_history (
 	change_id SERIAL PRIMARY KEY,
@@ -180,8 +312,24 @@ CREATE TABLE order_history (
 	order_owner VARCHAR(255) NOT NULL REFERENCES users(username),
 	type_changed TEXT[] DEFAULT ARRAY[]::TEXT[], 
     data_initial JSONB DEFAULT '{}'::jsonb, 
-    data_changed JSONB DEFAULT '{}'::jsonb,
-	isRead JSONB NOT NULL DEFAULT '{}'::jsonb
+    data_changed JSONB DEFAULT '{}'::jsonb
+);
+-- the change log is paged by descending change_id, per owner or per order
+CREATE INDEX order_history_owner_change_idx ON order_history (order_owner, change_id);
+CREATE INDEX order_history_order_change_idx ON order_history (order_id, change_id);
+
+-- read state of the change log: every change of the owner up to last_read_change_id has been
+-- read by the user, later ones only if they are listed in changelog_read_exceptions
+CREATE TABLE changelog_reads (
+    username VARCHAR(255) NOT NULL REFERENCES users(username) ON UPDATE CASCADE ON DELETE CASCADE,
+    order_owner VARCHAR(255) NOT NULL REFERENCES users(username) ON UPDATE CASCADE ON DELETE CASCADE,
+    last_read_change_id INT NOT NULL DEFAULT 0,
+    PRIMARY KEY (username, order_owner)
+);
+CREATE TABLE changelog_read_exceptions (
+    username VARCHAR(255) NOT NULL REFERENCES users(username) ON UPDATE CASCADE ON DELETE CASCADE,
+    change_id INT NOT NULL REFERENCES order_history(change_id) ON DELETE CASCADE,
+    PRIMARY KEY (username, change_id)
 );
 ALTER TABLE routes ENABLE ROW LEVEL SECURITY;
 CREATE POLICY system_selectRoute_policy ON routes FOR SELECT USING (current_setting('role') = 'system');
@@ -196,17 +344,32 @@ CREATE TABLE notifications(
     type VARCHAR(50) NOT NULL,
     data VARCHAR(255) NOT NULL,
     receiver VARCHAR(255) NOT NULL REFERENCES users(username) ON UPDATE CASCADE ON DELETE CASCADE,
-    order_id INT REFERENCES orders(order_id),
+    order_id INT REFERENCES orders(order_id) ON DELETE SET NULL,
     message_id INT REFERENCES messages(message_id),
     read BOOLEAN DEFAULT FALSE,
     timestamp TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
 );
 
+-- the unread counter only ever looks at unread notifications
+CREATE INDEX notifications_receiver_unread_idx ON notifications (receiver) WHERE read IS NOT TRUE;
+
 ALTER TABLE notifications ENABLE ROW LEVEL SECURITY;
 CREATE POLICY user_notification_policy ON notifications FOR SELECT USING (current_setting('username') = receiver);
 CREATE POLICY system_insertNotification_policy ON notifications FOR INSERT WITH CHECK (current_setting('role') = 'admin');
 CREATE POLICY system_updateNotification_policy ON notifications FOR UPDATE USING (current_setting('role') = 'admin');
 
+-- notifications still to be delivered, written in the same transaction as the order change
+-- and moved into notifications by the background dispatcher; order_id has no foreign key so
+-- the intent survives the deletion of its order
+CREATE TABLE notification_outbox(
+    outbox_id BIGSERIAL PRIMARY KEY,
+    type VARCHAR(50) NOT NULL,
+    -- follows a renamed or deleted receiver like notifications.receiver does
+    receiver VARCHAR(255) NOT NULL REFERENCES users(username) ON UPDATE CASCADE ON DELETE CASCADE,
+    order_id INT NOT NULL,
+    occurred_at TIMESTAMPTZ NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
 CREATE TABLE costs(
                       empty_ctr DECIMAL(4, 2),
                       full_ctr DECIMAL(4, 2),
@@ -0,0 +1,304 @@
+package org.saved4.saved4;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of physical PostgreSQL connections.
+ * <p>
+ * A borrowed connection has the {@code saved4.role} and {@code saved4.username} settings applied
+ * in one statement and is handed out in manual-commit mode. Closing it rolls back whatever was
+ * left uncommitted, clears both settings and puts the physical connection back in the pool.
+ * Idle connections are evicted after {@link #IDLE_TIMEOUT_MS}, every connection is retired after
+ * {@link #MAX_LIFETIME_MS}, and a connection that sat idle for a while is validated before reuse.
+ */
+final class ConnectionPool {
+    private static final long IDLE_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long MAX_LIFETIME_MS = TimeUnit.MINUTES.toMillis(30);
+    private static final long VALIDATE_AFTER_IDLE_MS = TimeUnit.SECONDS.toMillis(30);
+    private static final long ACQUIRE_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+    private static final long HOUSEKEEPING_PERIOD_MS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final String APPLY_SESSION_STMT =
+            "SELECT set_config('saved4.role', ?, false), set_config('saved4.username', ?, false);";
+    private static final String RESET_SESSION_STMT =
+            "SELECT set_config('saved4.role', '', false), set_config('saved4.username', '', false);";
+
+    private final String url;
+    private final String username;
+    private final int maxSize;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final ScheduledExecutorService housekeeper;
+    private int openCount;
+    private volatile boolean shutdown;
+
+    ConnectionPool(String url, String username, int maxSize) {
+        this.url = url;
+        this.username = username;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "saved4-db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::evictIdle,
+                HOUSEKEEPING_PERIOD_MS, HOUSEKEEPING_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection with the given role and (possibly null) username applied. The caller
+     * must close it, preferably with try-with-resources, to give it back to the pool.
+     */
+    Connection borrow(String role, String dbUsername) throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+        try {
+            if (!permits.tryAcquire(ACQUIRE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(
+                        "Timed out after " + ACQUIRE_TIMEOUT_MS + " ms waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            PooledConnection pooled = takeUsable();
+            try (PreparedStatement stmt = pooled.physical.prepareStatement(APPLY_SESSION_STMT)) {
+                stmt.setString(1, role);
+                stmt.setString(2, dbUsername == null ? "" : dbUsername);
+                stmt.executeQuery();
+            } catch (SQLException e) {
+                discard(pooled);
+                throw e;
+            }
+            // pgjdbc only sends BEGIN with the next statement, so this does not cost a round trip
+            pooled.physical.setAutoCommit(false);
+            return pooled.lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    void shutdown() {
+        shutdown = true;
+        housekeeper.shutdownNow();
+        List<PooledConnection> toClose;
+        synchronized (this) {
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+        }
+        toClose.forEach(this::discard);
+    }
+
+    private PooledConnection takeUsable() throws SQLException {
+        while (true) {
+            PooledConnection pooled;
+            synchronized (this) {
+                pooled = idle.pollFirst();
+            }
+            if (pooled == null) {
+                return open();
+            }
+            long now = System.currentTimeMillis();
+            if (now - pooled.createdAt >= MAX_LIFETIME_MS) {
+                discard(pooled);
+                continue;
+            }
+            if (now - pooled.lastReturnedAt >= VALIDATE_AFTER_IDLE_MS
+                    && !isValid(pooled.physical)) {
+                discard(pooled);
+                continue;
+            }
+            return pooled;
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        String password = System.getenv("SAVED4_DB_PASSWORD");
+        Connection physical = DriverManager.getConnection(url, username, password);
+        synchronized (this) {
+            openCount++;
+        }
+        return new PooledConnection(physical);
+    }
+
+    private void giveBack(PooledConnection pooled) {
+        try {
+            Connection physical = pooled.physical;
+            pooled.closeTrackedStatements();
+            if (physical.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            try (Statement stmt = physical.createStatement()) {
+                stmt.execute(RESET_SESSION_STMT);
+            }
+            pooled.lastReturnedAt = System.currentTimeMillis();
+            boolean keep;
+            synchronized (this) {
+                keep = !shutdown
+                        && pooled.lastReturnedAt - pooled.createdAt < MAX_LIFETIME_MS
+                        && openCount <= maxSize;
+                if (keep) {
+                    // most recently used first, so surplus connections age out at the tail
+                    idle.addFirst(pooled);
+                }
+            }
+            if (!keep) {
+                discard(pooled);
+            }
+        } catch (SQLException e) {
+            System.err.println("Dropping pooled connection that failed to reset: " + e.getMessage());
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> expired = new ArrayList<>();
+        synchronized (this) {
+            Iterator<PooledConnection> it = idle.iterator();
+            while (it.hasNext()) {
+                PooledConnection pooled = it.next();
+                if (now - pooled.lastReturnedAt >= IDLE_TIMEOUT_MS
+                        || now - pooled.createdAt >= MAX_LIFETIME_MS) {
+                    it.remove();
+                    expired.add(pooled);
+                }
+            }
+        }
+        expired.forEach(this::discard);
+    }
+
+    private void discard(PooledConnection pooled) {
+        synchronized (this) {
+            openCount--;
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            System.err.println("Failed to close pooled connection: " + e.getMessage());
+        }
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private final class PooledConnection {
+        private final Connection physical;
+        private final long createdAt;
+        private long lastReturnedAt;
+        private final List<Statement> statements = new ArrayList<>();
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.createdAt = System.currentTimeMillis();
+            this.lastReturnedAt = createdAt;
+        }
+
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this));
+        }
+
+        private void track(Object statement) {
+            if (statement instanceof Statement) {
+                statements.add((Statement) statement);
+            }
+        }
+
+        private void closeTrackedStatements() {
+            for (Statement statement : statements) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                    // the connection is reset or discarded right after this anyway
+                }
+            }
+            statements.clear();
+        }
+    }
+
+    /**
+     * Handler behind every leased connection: forwards calls to the physical connection until
+     * {@code close()} is called, which returns the connection to the pool exactly once.
+     */
+    private final class LeaseHandler implements InvocationHandler {
+        private PooledConnection pooled;
+
+        private LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (pooled != null) {
+                        PooledConnection returning = pooled;
+                        pooled = null;
+                        giveBack(returning);
+                    }
+                    return null;
+                case "isClosed":
+                    return pooled == null || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + (pooled == null ? "closed" : pooled.physical) + "]";
+                default:
+                    break;
+            }
+            if (pooled == null) {
+                throw new SQLException("Connection is closed");
+            }
+            try {
+                Object result = method.invoke(pooled.physical, args);
+                if (method.getName().startsWith("prepare") || method.getName().equals("createStatement")) {
+                    pooled.track(result);
+                }
+                return result;
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
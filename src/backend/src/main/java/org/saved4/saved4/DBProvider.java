@@ -1,8 +1,6 @@
 package org.saved4.saved4;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
-import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import org.saved4.saved4.enums.Role;
 
@@ -12,41 +10,48 @@ public final class DBProvider {
     private static final String URL =
             "jdbc:postgresql://" + HOST + ":5432/" + DB_NAME + "?currentSchema=saved4";
     private static final String USERNAME = "dab_di2425-2b_14";
+    private static final int DEFAULT_POOL_SIZE = 10;
+
+    private static final int POOL_SIZE = poolSize();
+    private static final ConnectionPool POOL = new ConnectionPool(URL, USERNAME, POOL_SIZE);
 
 
     private DBProvider() {
     }
 
+    /**
+     * Borrows a pooled connection with the given role applied. Connections must be closed to be
+     * returned to the pool, so always obtain them in a try-with-resources block.
+     */
     public static Connection getConnection(Role role) throws SQLException {
-        String password = System.getenv("SAVED4_DB_PASSWORD");
-
-        Connection con = DriverManager.getConnection(URL, USERNAME, password);
-        con.setAutoCommit(false);
-        String setRoleStmt = "SELECT set_config('saved4.role', ?, true) ;";
-
-        PreparedStatement stmt = con.prepareStatement(setRoleStmt);
-        stmt.setString(1, role.toString());
-        stmt.executeQuery();
-
-        return con;
+        return POOL.borrow(role.toString(), null);
     }
 
     public static Connection getConnection(Role role, String username) throws SQLException {
-        String password = System.getenv("SAVED4_DB_PASSWORD");
-
-        Connection con = DriverManager.getConnection(URL, USERNAME, password);
-        con.setAutoCommit(false);
-        String setRoleStmt = "SELECT set_config('saved4.role', ?, true) ;";
-        String setUsernameStmt = "SELECT set_config('saved4.username', ?, true) ;";
+        return POOL.borrow(role.toString(), username);
+    }
 
-        PreparedStatement roleStmt = con.prepareStatement(setRoleStmt);
-        roleStmt.setString(1, role.toString());
-        roleStmt.executeQuery();
+    /**
+     * The number of connections in the pool, from {@code SAVED4_DB_POOL_SIZE} or 10 by default.
+     */
+    public static int getPoolSize() {
+        return POOL_SIZE;
+    }
 
-        PreparedStatement usernameStmt = con.prepareStatement(setUsernameStmt);
-        usernameStmt.setString(1, username);
-        usernameStmt.executeQuery();
+    public static void shutdown() {
+        POOL.shutdown();
+    }
 
-        return con;
+    private static int poolSize() {
+        String configured = System.getenv("SAVED4_DB_POOL_SIZE");
+        if (configured == null || configured.isBlank()) {
+            return DEFAULT_POOL_SIZE;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(configured.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid SAVED4_DB_POOL_SIZE '" + configured + "', using " + DEFAULT_POOL_SIZE);
+            return DEFAULT_POOL_SIZE;
+        }
     }
 }
@@ -30,6 +30,8 @@ public class LoadData {
 
     public static void loadCompaniesAndChats() {
         DataFormatter formatter = new DataFormatter();
+        // every seeded company starts with the same password, hash it once
+        String passwordHash = PasswordHasher.hashPassword("password");
         try (Connection conn = DBProvider.getConnection(Role.SYSTEM)) {
             PreparedStatement userStmt = conn.prepareStatement("INSERT INTO users (username, password, email, type) VALUES(?, ?, ?, 'company')");
             PreparedStatement companyStmt = conn.prepareStatement("INSERT INTO companies VALUES(?, ?, ?, ?, ?)");
@@ -58,7 +60,7 @@ public class LoadData {
                     }
                 }
                 userStmt.setString(1, newCompany.getUsername());
-                userStmt.setString(2, PasswordHasher.hashPassword("password"));
+                userStmt.setString(2, passwordHash);
                 userStmt.setString(3, newCompany.getEmail());
 
                 userStmt.addBatch();
@@ -21,8 +21,7 @@ public class SavedApplication extends Application {
     }
 
     private void setup() {
-        try {
-            Connection conn = DBProvider.getConnection(Role.SYSTEM);
+        try (Connection conn = DBProvider.getConnection(Role.SYSTEM)) {
             String stmt = "INSERT INTO USERS VALUES ('admin', ?, 'admin', CURRENT_TIMESTAMP, null, 'admin')";
             PreparedStatement preparedStmt = conn.prepareStatement(stmt);
             preparedStmt.setString(1, PasswordHasher.hashPassword("admin"));
@@ -0,0 +1,16 @@
+package org.saved4.saved4;
+
+import jakarta.servlet.ServletContextEvent;
+import jakarta.servlet.ServletContextListener;
+import jakarta.servlet.annotation.WebListener;
+import org.saved4.saved4.auth.PasswordHasher;
+
+@WebListener
+public class SavedLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        PasswordHasher.shutdown();
+        DBProvider.shutdown();
+    }
+}
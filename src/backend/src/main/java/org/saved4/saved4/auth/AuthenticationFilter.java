@@ -34,6 +34,8 @@ public class AuthenticationFilter implements ContainerRequestFilter {
 
     @Inject
     private UserDao userDao;
+    @Inject
+    private PrincipalCache principalCache;
 
     @Override
     public void filter(ContainerRequestContext requestContext) {
@@ -72,16 +74,19 @@ public class AuthenticationFilter implements ContainerRequestFilter {
 
             // Check if user actually exists in database and is active
             try {
-                Role dbRole = getRole(userType);
-                User user = userDao.getUserByUsername(dbRole, username);
-                if (user == null) {
-                    abortWithUnauthorized(requestContext);
-                    return;
-                }
-                if (user.getUserType() != userType) {
-
-                    abortWithUnauthorized(requestContext);
-                    return;
+                if (!principalCache.isVerified(username, userFingerprintHash, userType)) {
+                    Role dbRole = getRole(userType);
+                    User user = userDao.getUserByUsername(dbRole, username);
+                    if (user == null) {
+                        abortWithUnauthorized(requestContext);
+                        return;
+                    }
+                    if (user.getUserType() != userType) {
+
+                        abortWithUnauthorized(requestContext);
+                        return;
+                    }
+                    principalCache.put(username, userFingerprintHash, userType);
                 }
             } catch (SQLException e) {
                 System.err.println(
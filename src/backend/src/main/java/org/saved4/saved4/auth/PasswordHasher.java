@@ -2,16 +2,87 @@ package org.saved4.saved4.auth;
 
 import de.mkammerer.argon2.Argon2;
 import de.mkammerer.argon2.Argon2Factory;
+import jakarta.ws.rs.InternalServerErrorException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.saved4.saved4.exceptions.TooManyRequestsException;
 
+/**
+ * Argon2 hashing on a small dedicated worker pool.
+ * <p>
+ * Every hash or verification allocates 64 MB, so at most {@code SAVED4_HASH_THREADS} of them run
+ * at once and at most {@code SAVED4_HASH_QUEUE} more wait for a worker. Callers block until their
+ * result is ready; when the queue is full they get a {@link TooManyRequestsException} (429)
+ * instead of piling up on the request threads.
+ */
 public class PasswordHasher {
     private static final Argon2 argon2 = Argon2Factory.create();
+    private static final int DEFAULT_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private static final int DEFAULT_QUEUE = 16;
+
+    private static final ThreadPoolExecutor executor = createExecutor();
 
     public static String hashPassword(String password) {
         // parameters: iterations, memory in KB, parallelism
-        return argon2.hash(3, 65536, 1, password.toCharArray());
+        return run(() -> argon2.hash(3, 65536, 1, password.toCharArray()));
     }
 
     public static boolean verifyPassword(String hash, String inputPassword) {
-        return argon2.verify(hash, inputPassword.toCharArray());
+        return run(() -> argon2.verify(hash, inputPassword.toCharArray()));
+    }
+
+    public static void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            System.err.println("Password hashing saturated, rejecting request");
+            throw new TooManyRequestsException();
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InternalServerErrorException();
+        } catch (ExecutionException e) {
+            System.err.println("Password hashing failed: " + e.getCause());
+            throw new InternalServerErrorException();
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        int threads = setting("SAVED4_HASH_THREADS", DEFAULT_THREADS);
+        int queue = setting("SAVED4_HASH_QUEUE", DEFAULT_QUEUE);
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                      new ArrayBlockingQueue<>(queue), runnable -> {
+            Thread thread = new Thread(runnable, "password-hasher-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static int setting(String name, int defaultValue) {
+        String configured = System.getenv(name);
+        if (configured == null || configured.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(configured.trim()));
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid " + name + " '" + configured + "', using " + defaultValue);
+            return defaultValue;
+        }
     }
 }
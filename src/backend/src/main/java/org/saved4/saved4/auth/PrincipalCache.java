@@ -0,0 +1,103 @@
+package org.saved4.saved4.auth;
+
+import jakarta.inject.Singleton;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import org.saved4.saved4.enums.UserType;
+
+/**
+ * Short-lived cache of users that {@link AuthenticationFilter} has already checked against the
+ * database, so a verified token does not cost a user lookup on every request.
+ * <p>
+ * Entries are keyed by username and token fingerprint hash, expire after {@link #TTL_MS} and the
+ * least recently used entry is evicted once {@link #MAX_ENTRIES} is reached. The DAOs that
+ * change, retype or deactivate users call {@link #invalidate(String)} so those changes apply to
+ * the next request instead of after the TTL.
+ */
+@Singleton
+public class PrincipalCache {
+    private static final long TTL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final int MAX_ENTRIES = 1000;
+
+    // guarded by itself
+    private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Returns whether the user was recently verified to exist, be active and have the given type.
+     */
+    public boolean isVerified(String username, String fingerprintHash, UserType userType) {
+        Key key = new Key(username, fingerprintHash);
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return false;
+            }
+            if (entry.expiresAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                return false;
+            }
+            return entry.userType == userType;
+        }
+    }
+
+    public void put(String username, String fingerprintHash, UserType userType) {
+        Entry entry = new Entry(userType, System.currentTimeMillis() + TTL_MS);
+        synchronized (entries) {
+            entries.put(new Key(username, fingerprintHash), entry);
+        }
+    }
+
+    /**
+     * Drops every cached token of the user.
+     */
+    public void invalidate(String username) {
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.username.equals(username));
+        }
+    }
+
+    private static final class Key {
+        private final String username;
+        private final String fingerprintHash;
+
+        private Key(String username, String fingerprintHash) {
+            this.username = username;
+            this.fingerprintHash = fingerprintHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return username.equals(other.username) &&
+                    fingerprintHash.equals(other.fingerprintHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(username, fingerprintHash);
+        }
+    }
+
+    private static final class Entry {
+        private final UserType userType;
+        private final long expiresAt;
+
+        private Entry(UserType userType, long expiresAt) {
+            this.userType = userType;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.saved4.saved4.dao;
 import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import org.saved4.saved4.DBProvider;
+import org.saved4.saved4.auth.PrincipalCache;
 import org.saved4.saved4.dto.Admin;
 import org.saved4.saved4.enums.Role;
 
@@ -17,21 +18,24 @@ public class AdminDao {
 
     @Inject
     UserDao userDao;
+    @Inject
+    PrincipalCache principalCache;
 
     public String create(Role role, Admin newAdmin) throws SQLException {
         userDao.create(role, newAdmin);
         String adminInsertStmt = "INSERT INTO admins VALUES (?, ?)";
 
-        Connection conn = DBProvider.getConnection(role);
-        PreparedStatement companyPreparedStmt = conn.prepareStatement(adminInsertStmt);
+        try (Connection conn = DBProvider.getConnection(role)) {
+            PreparedStatement companyPreparedStmt = conn.prepareStatement(adminInsertStmt);
 
-        companyPreparedStmt.setString(1, newAdmin.getUsername());
-        companyPreparedStmt.setString(2, newAdmin.getName());
+            companyPreparedStmt.setString(1, newAdmin.getUsername());
+            companyPreparedStmt.setString(2, newAdmin.getName());
 
-        companyPreparedStmt.executeUpdate();
-        conn.commit();
+            companyPreparedStmt.executeUpdate();
+            conn.commit();
 
-        return newAdmin.getUsername();
+            return newAdmin.getUsername();
+        }
     }
 
     public boolean update(Role role, String dbRequester, String username, Admin admin) throws SQLException {
@@ -59,24 +63,27 @@ public class AdminDao {
         updateQuery.append("FROM users u WHERE a.username = ? AND a.username = u.username AND u.is_active = TRUE; ");
         params.add(username);
 
-        Connection conn = DBProvider.getConnection(role, dbRequester);
-        PreparedStatement preparedStmt = conn.prepareStatement(updateQuery.toString());
-        for (int i = 0; i < params.size(); i++) {
-            preparedStmt.setObject(i + 1, params.get(i));
+        try (Connection conn = DBProvider.getConnection(role, dbRequester)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(updateQuery.toString());
+            for (int i = 0; i < params.size(); i++) {
+                preparedStmt.setObject(i + 1, params.get(i));
+            }
+            int affectedRows = preparedStmt.executeUpdate();
+            conn.commit();
+            return affectedRows > 0;
         }
-        int affectedRows = preparedStmt.executeUpdate();
-        conn.commit();
-        return affectedRows > 0;
     }
 
     public boolean delete(Role role, String dbRequester, String username) throws SQLException {
         String stmt = "UPDATE users u SET u.is_active = FALSE FROM companies c WHERE u.username = ? AND u.username = c.username AND u.is_active = TRUE";
-        Connection conn = DBProvider.getConnection(role, dbRequester);
-        PreparedStatement preparedStmt = conn.prepareStatement(stmt);
-        preparedStmt.setString(1, username);
-
-        int affectedRows = preparedStmt.executeUpdate();
-        conn.commit();
-        return affectedRows > 0;
+        try (Connection conn = DBProvider.getConnection(role, dbRequester)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(stmt);
+            preparedStmt.setString(1, username);
+
+            int affectedRows = preparedStmt.executeUpdate();
+            conn.commit();
+            principalCache.invalidate(username);
+            return affectedRows > 0;
+        }
     }
 }
@@ -2,6 +2,7 @@ package org.saved4.saved4.dao;
 
 import jakarta.inject.Singleton;
 import org.saved4.saved4.DBProvider;
+import org.saved4.saved4.dto.AnalyticsStats;
 import org.saved4.saved4.enums.FreightType;
 import org.saved4.saved4.enums.Role;
 import org.saved4.saved4.enums.VehicleStatus;
@@ -9,7 +10,6 @@ import org.saved4.saved4.enums.VehicleStatus;
 import java.sql.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
@@ -22,46 +22,42 @@ import java.util.*;
 public class AnalyticsDao {
 
     /**
-     * Appends common WHERE clauses for filtering by company name and date range to a SQL query.
-     * This method is used by multiple data retrieval methods to ensure consistent filtering logic.
+     * Appends common WHERE clauses for filtering by company name and date range to a query on the
+     * {@code order_daily_stats} rollup (aliased {@code s}). Rows of the rollup cover the orders
+     * made on one day, so the range is matched on whole days.
      *
      * @param sqlBuilder       The StringBuilder containing the base SQL query.
      * @param params           The list of parameters to be used in the PreparedStatement.
      * @param companyName      The name of the company to filter by. Can be null or empty for no company filter.
      * @param startDateStr     The start date string (e.g., "YYYY-MM-DD") for filtering. Can be null or empty.
      * @param endDateStr       The end date string (e.g., "YYYY-MM-DD") for filtering. Can be null or empty.
-     * @param dateColumn       The name of the date column in the database table to apply the filter on (e.g., "o.made_at").
-     * @param hasExistingWhere True if the sqlBuilder already contains a WHERE clause (e.g., "WHERE 1=1" or "WHERE status='completed'"), false otherwise.
+     * @param hasExistingWhere True if the sqlBuilder already contains a WHERE clause, false otherwise.
      *                         This helps in correctly appending "AND" or "WHERE".
      */
     private void appendCommonFilters(StringBuilder sqlBuilder, List<Object> params,
                                      String companyName, String startDateStr, String endDateStr,
-                                     String dateColumn, boolean hasExistingWhere) {
+                                     boolean hasExistingWhere) {
         String conjunction = hasExistingWhere ? " AND " : " WHERE ";
 
-        if (companyName != null && !companyName.trim().isEmpty()) {
-            sqlBuilder.append(conjunction).append("o.order_for = ?");
+        if (!isBlank(companyName)) {
+            sqlBuilder.append(conjunction).append("s.company = ?");
             params.add(companyName);
             conjunction = " AND "; // Subsequent conditions will also use AND
         }
 
-        boolean hasStartDate = startDateStr != null && !startDateStr.trim().isEmpty();
-        boolean hasEndDate = endDateStr != null && !endDateStr.trim().isEmpty();
+        boolean hasStartDate = !isBlank(startDateStr);
+        boolean hasEndDate = !isBlank(endDateStr);
 
         if (hasStartDate && hasEndDate) {
-            sqlBuilder.append(conjunction).append(dateColumn).append(" BETWEEN ? AND ?");
-            LocalDate startDate = LocalDate.parse(startDateStr);
-            params.add(Timestamp.valueOf(LocalDateTime.of(startDate, LocalTime.MIN)));
-            LocalDate endDate = LocalDate.parse(endDateStr);
-            params.add(Timestamp.valueOf(LocalDateTime.of(endDate, LocalTime.MAX)));
+            sqlBuilder.append(conjunction).append("s.day BETWEEN ? AND ?");
+            params.add(java.sql.Date.valueOf(LocalDate.parse(startDateStr)));
+            params.add(java.sql.Date.valueOf(LocalDate.parse(endDateStr)));
         } else if (hasStartDate) {
-            sqlBuilder.append(conjunction).append(dateColumn).append(" >= ?");
-            LocalDate startDate = LocalDate.parse(startDateStr);
-            params.add(Timestamp.valueOf(LocalDateTime.of(startDate, LocalTime.MIN)));
+            sqlBuilder.append(conjunction).append("s.day >= ?");
+            params.add(java.sql.Date.valueOf(LocalDate.parse(startDateStr)));
         } else if (hasEndDate) {
-            sqlBuilder.append(conjunction).append(dateColumn).append(" <= ?");
-            LocalDate endDate = LocalDate.parse(endDateStr);
-            params.add(Timestamp.valueOf(LocalDateTime.of(endDate, LocalTime.MAX)));
+            sqlBuilder.append(conjunction).append("s.day <= ?");
+            params.add(java.sql.Date.valueOf(LocalDate.parse(endDateStr)));
         }
     }
 
@@ -69,7 +65,7 @@ public class AnalyticsDao {
      * Sets parameters for a PreparedStatement based on their type.
      *
      * @param ps     The PreparedStatement to set parameters for.
-     * @param params The list of parameters (String, Timestamp, Integer, Double) to set.
+     * @param params The list of parameters (String, Date, Timestamp, Integer, Double) to set.
      * @throws SQLException If a database access error occurs.
      */
     private void setParameters(PreparedStatement ps, List<Object> params) throws SQLException {
@@ -77,6 +73,8 @@ public class AnalyticsDao {
             Object param = params.get(i);
             if (param instanceof String) {
                 ps.setString(i + 1, (String) param);
+            } else if (param instanceof java.sql.Date) {
+                ps.setDate(i + 1, (java.sql.Date) param);
             } else if (param instanceof Timestamp) {
                 ps.setTimestamp(i + 1, (Timestamp) param);
             } else if (param instanceof Integer) {
@@ -172,23 +170,8 @@ public class AnalyticsDao {
      * @return The total number of orders matching the criteria.
      */
     public int getTotalOrders(String companyName, String startDate, String endDate) {
-        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM orders o");
-        List<Object> params = new ArrayList<>();
-        // Start with false as no WHERE clause is initially present in the base SQL
-        appendCommonFilters(sql, params, companyName, startDate, endDate, "o.made_at", false);
-
-        try (Connection conn = DBProvider.getConnection(Role.SYSTEM);
-             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-            setParameters(ps, params);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("Error fetching total orders: " + e.getMessage());
-        }
-        return 0;
+        return (int) queryRollup("SUM(s.total_orders)", false, companyName, startDate, endDate,
+                                 "total orders");
     }
 
     /**
@@ -200,24 +183,8 @@ public class AnalyticsDao {
      * @return The total number of completed orders matching the criteria.
      */
     public int getCompletedOrders(String companyName, String startDate, String endDate) {
-        StringBuilder sql =
-                new StringBuilder("SELECT COUNT(*) FROM orders o WHERE status = 'completed'");
-        List<Object> params = new ArrayList<>();
-        // Pass true because 'WHERE status = 'completed'' is an existing WHERE clause
-        appendCommonFilters(sql, params, companyName, startDate, endDate, "o.made_at", true);
-
-        try (Connection conn = DBProvider.getConnection(Role.SYSTEM);
-             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-            setParameters(ps, params);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("Error fetching completed orders: " + e.getMessage());
-        }
-        return 0;
+        return (int) queryRollup("SUM(s.completed_orders)", false, companyName, startDate, endDate,
+                                 "completed orders");
     }
 
     /**
@@ -234,89 +201,202 @@ public class AnalyticsDao {
      * @throws IllegalArgumentException If an invalid period is provided and no date range is given.
      */
     public int getOrderVolumeByPeriod(String period, String companyName, String startDate, String endDate) {
-        StringBuilder sql = new StringBuilder("SELECT COUNT(*) AS count FROM orders o");
-        List<Object> params = new ArrayList<>();
-
         // Determine the effective startDate and endDate based on period if explicit dates are not provided
         String effectiveStartDate = startDate;
         String effectiveEndDate = endDate;
 
-        // Current date/time for calculations
-        LocalDate now = LocalDate.now(); // Current date is 2025-07-02
-
         // If no explicit date range is provided, calculate the range for the requested period
-        if ((startDate == null || startDate.trim().isEmpty()) && (endDate == null || endDate.trim().isEmpty())) {
-            switch (period.toLowerCase()) {
-                case "day":
-                    effectiveStartDate = now.format(DateTimeFormatter.ISO_LOCAL_DATE); // 2025-07-02
-                    effectiveEndDate = now.format(DateTimeFormatter.ISO_LOCAL_DATE); // 2025-07-02
-                    break;
-                case "week":
-                    // Start of the current week (Monday)
-                    effectiveStartDate = now.with(java.time.DayOfWeek.MONDAY).format(DateTimeFormatter.ISO_LOCAL_DATE); // 2025-06-30
-                    effectiveEndDate = now.with(java.time.DayOfWeek.SUNDAY).format(DateTimeFormatter.ISO_LOCAL_DATE); // 2025-07-06
-                    break;
-                case "month":
-                    // Start of the current month (July 1st)
-                    effectiveStartDate = now.withDayOfMonth(1).format(DateTimeFormatter.ISO_LOCAL_DATE); // 2025-07-01
-                    // End of the current month (July 31st)
-                    effectiveEndDate = now.withDayOfMonth(now.lengthOfMonth()).format(DateTimeFormatter.ISO_LOCAL_DATE); // 2025-07-31
-                    break;
-                default:
-                    // If an invalid period and no explicit dates, we might want to default or throw
-                    // For now, let's just make sure it's handled. Returning 0 or throwing is fine.
-                    System.err.println("Invalid period provided: " + period + " and no explicit date range.");
-                    return 0; // Or throw new IllegalArgumentException("Invalid period: " + period);
+        if (isBlank(startDate) && isBlank(endDate)) {
+            String[] range = periodRange(period);
+            if (range == null) {
+                // If an invalid period and no explicit dates, we might want to default or throw
+                // For now, let's just make sure it's handled. Returning 0 or throwing is fine.
+                System.err.println("Invalid period provided: " + period + " and no explicit date range.");
+                return 0; // Or throw new IllegalArgumentException("Invalid period: " + period);
             }
+            effectiveStartDate = range[0];
+            effectiveEndDate = range[1];
         }
 
-        // Now, let appendCommonFilters handle ALL date filtering, using our effective dates
-        // It starts with false because our base SQL doesn't have a WHERE clause yet.
-        appendCommonFilters(sql, params, companyName, effectiveStartDate, effectiveEndDate, "o.made_at", false);
+        return (int) queryRollup("SUM(s.total_orders)", false, companyName, effectiveStartDate,
+                                 effectiveEndDate, "order volume");
+    }
+
+    /**
+     * Evaluates one aggregate over the rollup rows matching the filters.
+     *
+     * @param aggregate   The aggregate expression over {@code s} (and {@code v} when joined).
+     * @param joinVehicle Whether to join the vehicle of each rollup row as {@code v}.
+     * @param description What is fetched, for the error message.
+     * @return The value of the aggregate, or 0 if there are no rows or an error occurs.
+     */
+    private double queryRollup(String aggregate, boolean joinVehicle, String companyName,
+                               String startDate, String endDate, String description) {
+        StringBuilder sql = new StringBuilder("SELECT COALESCE(").append(aggregate)
+                .append(", 0) FROM order_daily_stats s");
+        if (joinVehicle) {
+            sql.append(" JOIN vehicles v ON s.vehicle_id = v.vehicle_id");
+        }
+        List<Object> params = new ArrayList<>();
+        appendCommonFilters(sql, params, companyName, startDate, endDate, false);
 
         try (Connection conn = DBProvider.getConnection(Role.SYSTEM);
              PreparedStatement ps = conn.prepareStatement(sql.toString())) {
             setParameters(ps, params);
-
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getInt("count");
+                    return rs.getDouble(1);
                 }
             }
         } catch (SQLException e) {
-            System.err.println("Error fetching order volume: " + e.getMessage());
+            System.err.println("Error fetching " + description + ": " + e.getMessage());
         }
         return 0;
     }
 
     /**
-     * Retrieves the total number of completed trips (orders with status 'completed'),
-     * optionally filtered by company name and date range.
+     * Returns the first and last day (as "YYYY-MM-DD") of the current day, week or month.
      *
+     * @param period "day", "week" or "month"
+     * @return the start and end date, or null for any other period
+     */
+    private static String[] periodRange(String period) {
+        LocalDate now = LocalDate.now();
+        switch (period.toLowerCase()) {
+            case "day":
+                return new String[]{now.format(DateTimeFormatter.ISO_LOCAL_DATE),
+                        now.format(DateTimeFormatter.ISO_LOCAL_DATE)};
+            case "week":
+                // Monday to Sunday of the current week
+                return new String[]{
+                        now.with(java.time.DayOfWeek.MONDAY).format(DateTimeFormatter.ISO_LOCAL_DATE),
+                        now.with(java.time.DayOfWeek.SUNDAY).format(DateTimeFormatter.ISO_LOCAL_DATE)};
+            case "month":
+                return new String[]{
+                        now.withDayOfMonth(1).format(DateTimeFormatter.ISO_LOCAL_DATE),
+                        now.withDayOfMonth(now.lengthOfMonth()).format(DateTimeFormatter.ISO_LOCAL_DATE)};
+            default:
+                return null;
+        }
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
+
+    /**
+     * Computes every order, shipment, container and vehicle metric of the dashboard in a single
+     * statement. All order metrics are summed from the matching rows of the daily rollup, so the
+     * cost depends on the number of days in range rather than the number of orders, and the
+     * vehicle metrics come from one scan of {@code vehicles}.
+     * The completion rate is left to the caller.
+     *
+     * @param period      The period for order volume calculation ("day", "week", or "month"),
+     *                    only used when no date range is given.
      * @param companyName The name of the company to filter by. Can be null or empty for no company filter.
      * @param startDate   The start date string (e.g., "YYYY-MM-DD") for filtering orders by 'made_at'.
      * @param endDate     The end date string (e.g., "YYYY-MM-DD") for filtering orders by 'made_at'.
-     * @return The total number of completed trips matching the criteria.
+     * @return The statistics, all zero if an error occurs.
      */
-    public int getTotalTrips(String companyName, String startDate, String endDate) {
-        StringBuilder sql =
-                new StringBuilder("SELECT COUNT(*) FROM orders o WHERE o.status = 'completed'");
+    public AnalyticsStats getAllAnalytics(String period, String companyName, String startDate,
+                                          String endDate) {
+        AnalyticsStats stats = new AnalyticsStats();
+        // parameters of the select list come before those of the WHERE clause
         List<Object> params = new ArrayList<>();
-        // Pass true because of existing WHERE clause
-        appendCommonFilters(sql, params, companyName, startDate, endDate, "o.made_at", true);
+        StringBuilder sql = new StringBuilder("""
+                WITH order_stats AS (
+                    SELECT COALESCE(SUM(s.total_orders), 0) AS total_orders,
+                           COALESCE(SUM(s.completed_orders), 0) AS completed_orders,
+                           COALESCE(SUM(s.completed_orders * v.distance), 0) AS total_distance,
+                           COALESCE(SUM(s.traveling_hours), 0) AS traveling_hours,
+                           COALESCE(SUM(s.waiting_minutes) / NULLIF(SUM(s.waited_orders), 0), 0) AS avg_waiting_minutes,
+                           COALESCE(SUM(s.freight_weight) / NULLIF(SUM(s.weighed_orders), 0), 0) AS avg_weight,
+                           COALESCE(SUM(s.shared_orders), 0) AS shared_containers,
+                           COALESCE(SUM(s.freight_value), 0) AS total_freight_value
+                """);
+
+        // the order volume covers the explicit date range, or else the current period
+        if (!isBlank(startDate) || !isBlank(endDate)) {
+            sql.append(", COALESCE(SUM(s.total_orders), 0) AS order_volume");
+        } else {
+            String[] range = periodRange(period);
+            if (range == null) {
+                System.err.println("Invalid period provided: " + period + " and no explicit date range.");
+                sql.append(", 0 AS order_volume");
+            } else {
+                sql.append(", COALESCE(SUM(s.total_orders) FILTER (WHERE s.day BETWEEN ? AND ?), 0) AS order_volume");
+                params.add(java.sql.Date.valueOf(range[0]));
+                params.add(java.sql.Date.valueOf(range[1]));
+            }
+        }
+
+        for (FreightType type : FreightType.values()) {
+            sql.append(", COALESCE(SUM(s.").append(type.name()).append("_orders), 0) AS freight_")
+                    .append(type.name());
+        }
+
+        sql.append(" FROM order_daily_stats s LEFT JOIN vehicles v ON s.vehicle_id = v.vehicle_id");
+        appendCommonFilters(sql, params, companyName, startDate, endDate, false);
+
+        sql.append("), vehicle_stats AS (SELECT COUNT(*) AS total_vehicles");
+        for (VehicleStatus status : VehicleStatus.values()) {
+            sql.append(", COUNT(*) FILTER (WHERE status = ?::vehicle_status) AS vehicles_")
+                    .append(status.name());
+            params.add(status.getDbValue());
+        }
+        sql.append(" FROM vehicles) SELECT * FROM order_stats, vehicle_stats");
 
         try (Connection conn = DBProvider.getConnection(Role.SYSTEM);
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-            setParameters(stmt, params);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
+             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+            setParameters(ps, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    return stats;
+                }
+                stats.setTotalOrders(rs.getInt("total_orders"));
+                stats.setCompletedOrders(rs.getInt("completed_orders"));
+                stats.setOrderVolume(rs.getInt("order_volume"));
+                // every completed order is a trip
+                stats.setTotalTrips(rs.getInt("completed_orders"));
+                stats.setTotalDistance(rs.getDouble("total_distance"));
+                stats.setTravelingHours(rs.getDouble("traveling_hours"));
+                stats.setAverageWaitingTime(rs.getDouble("avg_waiting_minutes"));
+                stats.setAvgWeightPerShipment(rs.getDouble("avg_weight"));
+                stats.setSharedContainers(rs.getInt("shared_containers"));
+                stats.setTotalFreightValue(rs.getDouble("total_freight_value"));
+
+                Map<FreightType, Integer> freightTypes = new HashMap<>();
+                for (FreightType type : FreightType.values()) {
+                    freightTypes.put(type, rs.getInt("freight_" + type.name()));
                 }
+                stats.setFreightTypeComposition(freightTypes);
+
+                Map<VehicleStatus, Integer> vehicleStatuses = new HashMap<>();
+                for (VehicleStatus status : VehicleStatus.values()) {
+                    vehicleStatuses.put(status, rs.getInt("vehicles_" + status.name()));
+                }
+                stats.setTotalVehicles(rs.getInt("total_vehicles"));
+                stats.setAvailableVehicles(vehicleStatuses.get(VehicleStatus.available));
+                stats.setVehicleStatusDistribution(vehicleStatuses);
             }
         } catch (SQLException e) {
-            System.err.println("Error fetching total trips: " + e.getMessage());
+            System.err.println("Error fetching analytics: " + e.getMessage());
         }
-        return 0;
+        return stats;
+    }
+
+    /**
+     * Retrieves the total number of completed trips (orders with status 'completed'),
+     * optionally filtered by company name and date range.
+     *
+     * @param companyName The name of the company to filter by. Can be null or empty for no company filter.
+     * @param startDate   The start date string (e.g., "YYYY-MM-DD") for filtering orders by 'made_at'.
+     * @param endDate     The end date string (e.g., "YYYY-MM-DD") for filtering orders by 'made_at'.
+     * @return The total number of completed trips matching the criteria.
+     */
+    public int getTotalTrips(String companyName, String startDate, String endDate) {
+        return (int) queryRollup("SUM(s.completed_orders)", false, companyName, startDate, endDate,
+                                 "total trips");
     }
 
     /**
@@ -329,27 +409,9 @@ public class AnalyticsDao {
      * @return The total distance traveled in kilometers.
      */
     public double getTotalDistanceTraveled(String companyName, String startDate, String endDate) {
-        StringBuilder sql = new StringBuilder("""
-                    SELECT COALESCE(SUM(v.distance), 0)
-                    FROM orders o
-                    JOIN vehicles v ON o.vehicle_id = v.vehicle_id 
-                    WHERE o.status = 'completed'
-                """);
-        List<Object> params = new ArrayList<>();
-        appendCommonFilters(sql, params, companyName, startDate, endDate, "o.made_at", true);
-
-        try (Connection conn = DBProvider.getConnection(Role.SYSTEM);
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-            setParameters(stmt, params);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getDouble(1);
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("Error fetching total distance: " + e.getMessage());
-        }
-        return 0;
+        // every completed order travels the distance of its vehicle
+        return queryRollup("SUM(s.completed_orders * v.distance)", true, companyName, startDate,
+                           endDate, "total distance");
     }
 
     /**
@@ -363,27 +425,8 @@ public class AnalyticsDao {
      * @return The total traveling hours.
      */
     public double getTotalTravelingHours(String companyName, String startDate, String endDate) {
-        StringBuilder sql = new StringBuilder("""
-                    SELECT COALESCE(SUM(EXTRACT(EPOCH FROM (o.eta - o.made_at)) / 3600), 0)
-                    FROM orders o
-                    WHERE o.status = 'completed'
-                """);
-        List<Object> params = new ArrayList<>();
-        // Pass true because of existing WHERE clause
-        appendCommonFilters(sql, params, companyName, startDate, endDate, "o.made_at", true);
-
-        try (Connection conn = DBProvider.getConnection(Role.SYSTEM);
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-            setParameters(stmt, params);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getDouble(1);
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("Error fetching traveling hours: " + e.getMessage());
-        }
-        return 0;
+        return queryRollup("SUM(s.traveling_hours)", false, companyName, startDate, endDate,
+                           "traveling hours");
     }
 
     /**
@@ -397,26 +440,8 @@ public class AnalyticsDao {
      */
     public double getAverageWaitingTimeMinutes(String companyName, String startDate,
                                                String endDate) {
-        StringBuilder sql = new StringBuilder("""
-                    SELECT COALESCE(AVG(EXTRACT(EPOCH FROM (o.departure_time - o.tw_start)) / 60), 0)
-                    FROM orders o
-                    WHERE o.departure_time IS NOT NULL AND o.tw_start IS NOT NULL AND o.status = 'completed'
-                """);
-        List<Object> params = new ArrayList<>();
-        appendCommonFilters(sql, params, companyName, startDate, endDate, "o.made_at", true);
-
-        try (Connection conn = DBProvider.getConnection(Role.SYSTEM);
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-            setParameters(stmt, params);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getDouble(1);
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("Error fetching average waiting time: " + e.getMessage());
-        }
-        return 0;
+        return queryRollup("SUM(s.waiting_minutes) / NULLIF(SUM(s.waited_orders), 0)", false,
+                           companyName, startDate, endDate, "average waiting time");
     }
 
     /**
@@ -429,23 +454,8 @@ public class AnalyticsDao {
      * @return The average freight weight.
      */
     public double getAverageWeightPerShipment(String companyName, String startDate, String endDate) {
-        StringBuilder sql = new StringBuilder("SELECT COALESCE(AVG(o.freight_weight), 0) FROM orders o WHERE o.freight_weight IS NOT NULL AND o.status = 'completed'");
-        List<Object> params = new ArrayList<>();
-        // Pass true because of existing WHERE clause
-        appendCommonFilters(sql, params, companyName, startDate, endDate, "o.made_at", true);
-
-        try (Connection conn = DBProvider.getConnection(Role.SYSTEM);
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-            setParameters(stmt, params);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getDouble(1);
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("Error fetching avg weight: " + e.getMessage());
-        }
-        return 0;
+        return queryRollup("SUM(s.freight_weight) / NULLIF(SUM(s.weighed_orders), 0)", false,
+                           companyName, startDate, endDate, "avg weight");
     }
 
     /**
@@ -458,24 +468,8 @@ public class AnalyticsDao {
      * @return The count of shared containers in completed orders.
      */
     public int getSharedContainersCount(String companyName, String startDate, String endDate) {
-        StringBuilder sql = new StringBuilder(
-                "SELECT COUNT(*) FROM orders o WHERE o.is_shared = true AND o.status = 'completed'");
-        List<Object> params = new ArrayList<>();
-        // Pass true because of existing WHERE clause
-        appendCommonFilters(sql, params, companyName, startDate, endDate, "o.made_at", true);
-
-        try (Connection conn = DBProvider.getConnection(Role.SYSTEM);
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-            setParameters(stmt, params);
-            try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
-            }
-        } catch (SQLException e) {
-            System.err.println("Error fetching shared container count: " + e.getMessage());
-        }
-        return 0;
+        return (int) queryRollup("SUM(s.shared_orders)", false, companyName, startDate, endDate,
+                                 "shared container count");
     }
 
     /**
@@ -497,37 +491,23 @@ public class AnalyticsDao {
             result.put(type, 0); // Initialize using the enum constant itself
         }
 
-        StringBuilder sql = new StringBuilder("""
-                    SELECT freight_type, COUNT(*) AS count
-                    FROM orders o
-                    WHERE o.status = 'completed'
-                """);
+        // the rollup counts completed orders per type, with a missing type counted as 'other'
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (FreightType type : FreightType.values()) {
+            sql.append(type.ordinal() == 0 ? "" : ", ")
+                    .append("COALESCE(SUM(s.").append(type.name()).append("_orders), 0)");
+        }
+        sql.append(" FROM order_daily_stats s");
         List<Object> params = new ArrayList<>();
-        appendCommonFilters(sql, params, companyName, startDate, endDate, "o.made_at", true);
-        sql.append(" GROUP BY freight_type");
+        appendCommonFilters(sql, params, companyName, startDate, endDate, false);
 
         try (Connection conn = DBProvider.getConnection(Role.SYSTEM);
              PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
             setParameters(stmt, params);
             try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    String typeString = rs.getString("freight_type");
-
-                    if (typeString == null || typeString.trim().isEmpty()) {
-                        System.err.println("Skipping null or empty freight_type from database. Mapping to 'other'.");
-                        // Increment 'other' for null/empty values
-                        result.put(FreightType.other, result.getOrDefault(FreightType.other, 0) + rs.getInt("count"));
-                        continue; // Move to the next result row
-                    }
-
-                    try {
-                        FreightType ft = FreightType.fromDbValue(typeString);
-                        result.put(ft, rs.getInt("count"));
-                    } catch (IllegalArgumentException e) {
-                        // This catch block will now only be hit if fromDbValue fails (i.e., truly unknown string)
-                        System.err.println("Unknown freight type from database: '" + typeString + "'. Mapping to 'other'.");
-                        result.put(FreightType.other,
-                                result.getOrDefault(FreightType.other, 0) + rs.getInt("count"));
+                if (rs.next()) {
+                    for (FreightType type : FreightType.values()) {
+                        result.put(type, rs.getInt(type.ordinal() + 1));
                     }
                 }
             }
@@ -546,21 +526,8 @@ public class AnalyticsDao {
      * @return The total freight value.
      */
     public double getTotalFreightValue(String companyName, String startDate, String endDate) {
-        StringBuilder sql = new StringBuilder("SELECT COALESCE(SUM(freight_value), 0) FROM orders o");
-        List<Object> params = new ArrayList<>();
-        // Start with false as no WHERE clause is initially present in the base SQL
-        appendCommonFilters(sql, params, companyName, startDate, endDate, "o.made_at", false);
-
-        try (Connection conn = DBProvider.getConnection(Role.SYSTEM);
-             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-            setParameters(ps, params);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) return rs.getDouble(1);
-            }
-        } catch (SQLException e) {
-            System.err.println("Error fetching total freight value: " + e.getMessage());
-        }
-        return 0;
+        return queryRollup("SUM(s.freight_value)", false, companyName, startDate, endDate,
+                           "total freight value");
     }
 
     /**
@@ -594,17 +561,17 @@ public class AnalyticsDao {
 
         switch (period.toLowerCase()) {
             case "year":
-                selectClause = "EXTRACT(YEAR FROM o.made_at) AS year_label";
+                selectClause = "EXTRACT(YEAR FROM s.day) AS year_label";
                 groupByClause = "year_label";
                 orderByClause = "year_label";
                 break;
             case "month":
-                selectClause = "date_trunc('month', o.made_at) AS month_key";
+                selectClause = "date_trunc('month', s.day::timestamp) AS month_key";
                 groupByClause = "month_key";
                 orderByClause = "month_key";
                 break;
             case "day":
-                selectClause = "date_trunc('day', o.made_at) AS day_key";
+                selectClause = "s.day::timestamp AS day_key";
                 groupByClause = "day_key";
                 orderByClause = "day_key";
                 break;
@@ -615,14 +582,16 @@ public class AnalyticsDao {
         }
 
         StringBuilder sql = new StringBuilder(String.format(
-                "SELECT %s, COUNT(*) AS order_count FROM orders o", selectClause));
+                "SELECT %s, SUM(s.total_orders) AS order_count FROM order_daily_stats s", selectClause));
 
         List<Object> params = new ArrayList<>();
         // Start with false as no WHERE clause is initially present in the base SQL
         // appendCommonFilters will add WHERE or AND as needed
-        appendCommonFilters(sql, params, companyName, startDateStr, endDateStr, "o.made_at", false);
+        appendCommonFilters(sql, params, companyName, startDateStr, endDateStr, false);
 
         sql.append(" GROUP BY ").append(groupByClause);
+        // rollup rows can drop back to zero when orders are deleted or moved to another day
+        sql.append(" HAVING SUM(s.total_orders) > 0");
         sql.append(" ORDER BY ").append(orderByClause);
 
 
@@ -1,17 +1,14 @@
 package org.saved4.saved4.dao;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Singleton;
-import org.postgresql.util.PGobject;
 import org.saved4.saved4.DBProvider;
 import org.saved4.saved4.dto.ChangeLog;
 import org.saved4.saved4.dto.ChangeStatus;
 import org.saved4.saved4.enums.Role;
 
+import java.io.IOException;
 import java.sql.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -23,86 +20,154 @@ import java.util.stream.Collectors;
 public class ChangeLogDao {
 
     private final ObjectMapper mapper = new ObjectMapper();
-    private static final DateTimeFormatter ISO_FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final int FETCH_SIZE = 500;
+    // whether the viewer bound to the two parameters of READ_STATE_JOINS has read the log h
+    private static final String READ_BY_VIEWER =
+            "(h.change_id <= COALESCE(r.last_read_change_id, 0) OR e.change_id IS NOT NULL)";
+    private static final String READ_STATE_JOINS =
+            "LEFT JOIN changelog_reads r ON r.username = ? AND r.order_owner = h.order_owner " +
+            "LEFT JOIN changelog_read_exceptions e ON e.username = ? AND e.change_id = h.change_id ";
 
     /**
-     * Retrieves all change logs from the order_history table, ordered by change_id in descending order.
-     * This method is typically used for an administrative view where all data is visible.
+     * Hands change logs to {@code handler} one by one as they are read, newest first, without
+     * collecting them. Rows are fetched in batches of {@link #FETCH_SIZE}.
      *
-     * @return A list of {@link ChangeLog} objects representing all change log entries.
+     * @param orderOwner only logs of orders owned by this user, or null for all logs
+     * @param viewer     the user whose read state is reported on the logs, or null for none
+     * @param handler    receives each log while the result set is still open
      */
-    @ApplicationScoped
-    public List<ChangeLog> getAllChangeLogs() {
-        List<ChangeLog> logs = new ArrayList<>();
-        // IMPORTANT: Select the new 'isRead' column
-        String query = "SELECT * FROM order_history ORDER BY change_id DESC";
+    public void streamChangeLogs(String orderOwner, String viewer, RowHandler<ChangeLog> handler)
+            throws SQLException, IOException {
+        streamChangeLogs(orderOwner, viewer, null, null, null, null, true, handler);
+    }
 
-        System.out.println("DAO: Attempting to retrieve all changelogs.");
+    /**
+     * Hands one page of change logs to {@code handler}, newest first. The filters use the
+     * {@code (order_owner, change_id)} and {@code (order_id, change_id)} indexes, so a page costs
+     * the same wherever it starts.
+     *
+     * @param orderOwner  only logs of orders owned by this user, or null for all logs
+     * @param viewer      the user whose read state is reported on the logs, or null for none
+     * @param orderId     only logs of this order, or null for all orders
+     * @param since       only logs modified at or after this time, or null for all
+     * @param afterId     only logs with a smaller change id, null to start at the newest
+     * @param limit       the maximum number of logs, or null for all
+     * @param includeData whether to load the initial and changed values, which are by far the
+     *                    largest part of a log; without them both maps are left empty
+     * @param handler     receives each log while the result set is still open
+     */
+    public void streamChangeLogs(String orderOwner, String viewer, Integer orderId,
+                                 Timestamp since, Integer afterId, Integer limit,
+                                 boolean includeData, RowHandler<ChangeLog> handler)
+            throws SQLException, IOException {
+        StringBuilder query = new StringBuilder("SELECT h.change_id, h.order_id, h.modified_at, " +
+                "h.change_status, h.modified_by, h.order_owner, h.type_changed, ");
+        if (includeData) {
+            query.append("h.data_initial, h.data_changed, ");
+        }
+        query.append(READ_BY_VIEWER).append(" AS read_by_viewer FROM order_history h ")
+                .append(READ_STATE_JOINS);
+
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        params.add(viewer);
+        params.add(viewer);
+        if (orderOwner != null) {
+            conditions.add("h.order_owner = ?");
+            params.add(orderOwner);
+        }
+        if (orderId != null) {
+            conditions.add("h.order_id = ?");
+            params.add(orderId);
+        }
+        if (since != null) {
+            conditions.add("h.modified_at >= ?");
+            params.add(since);
+        }
+        if (afterId != null) {
+            conditions.add("h.change_id < ?");
+            params.add(afterId);
+        }
+        if (!conditions.isEmpty()) {
+            query.append("WHERE ").append(String.join(" AND ", conditions)).append(' ');
+        }
+        query.append("ORDER BY h.change_id DESC");
+        if (limit != null) {
+            query.append(" LIMIT ?");
+            params.add(limit);
+        }
 
         try (Connection connection = DBProvider.getConnection(Role.SYSTEM);
-             PreparedStatement stmt = connection.prepareStatement(query);
-             ResultSet rs = stmt.executeQuery()) {
+             PreparedStatement stmt = connection.prepareStatement(query.toString())) {
+            stmt.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
 
-            while (rs.next()) {
-                logs.add(mapResultSetToChangeLog(rs));
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    ChangeLog log = mapResultSetToChangeLog(rs, includeData);
+                    log.setRead(rs.getBoolean("read_by_viewer"));
+                    handler.handle(log);
+                }
             }
-            System.out.println("DAO: Successfully retrieved " + logs.size() + " changelog entries.");
-        } catch (SQLException e) {
-            System.err.println("DAO Error retrieving all changelogs: " + e.getMessage());
-            e.printStackTrace();
-        } catch (Exception e) {
-            System.err.println("DAO Unexpected Error retrieving all changelogs: " + e.getMessage());
-            e.printStackTrace();
         }
-        return logs;
     }
 
     /**
-     * Inserts a new change log entry into the order_history table.
+     * Counts the change logs the user has not read yet.
+     * <p>
+     * The count is driven by the viewer's watermarks: for each owner only the logs above the
+     * watermark are counted, as a range on {@code (order_owner, change_id)}, and the logs above
+     * it that were read one by one are subtracted. Logs at or below a watermark are never
+     * visited.
      *
-     * @param log The {@link ChangeLog} object containing the data to be inserted.
+     * @param orderOwner only logs of orders owned by this user, or null for all logs
+     * @param viewer     the user whose read state is counted
+     * @return the number of unread logs
      */
-    public void insertChangeLog(ChangeLog log) {
-        // IMPORTANT: Add 'isRead' to the INSERT statement
-        String query = "INSERT INTO order_history (order_id, modified_at, change_status, modified_by, order_owner, type_changed, data_initial, data_changed, isRead) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    public int countUnread(String orderOwner, String viewer) throws SQLException {
+        String ownerFilter = orderOwner == null ? "" : " AND u.username = ?";
+        String query = """
+                SELECT (SELECT COALESCE(SUM(owner_logs.unread), 0)
+                        FROM (SELECT (SELECT COUNT(*) FROM order_history h
+                                      WHERE h.order_owner = u.username
+                                      AND h.change_id > COALESCE(r.last_read_change_id, 0)) AS unread
+                              FROM users u
+                              LEFT JOIN changelog_reads r ON r.username = ? AND r.order_owner = u.username
+                              WHERE TRUE%1$s) owner_logs)
+                     - (SELECT COUNT(*) FROM changelog_read_exceptions e
+                        JOIN order_history h ON h.change_id = e.change_id
+                        JOIN users u ON u.username = h.order_owner
+                        LEFT JOIN changelog_reads r ON r.username = e.username AND r.order_owner = h.order_owner
+                        WHERE e.username = ? AND h.change_id > COALESCE(r.last_read_change_id, 0)%1$s)
+                """.formatted(ownerFilter);
+
         try (Connection connection = DBProvider.getConnection(Role.SYSTEM);
              PreparedStatement stmt = connection.prepareStatement(query)) {
-
-            connection.setAutoCommit(true);
-
-            stmt.setInt(1, log.getOrderId());
-            stmt.setTimestamp(2, log.getModifiedAt());
-            String statusForDb = log.getChangeStatus().stream()
-                    .map(ChangeStatus::getDbValue)
-                    .collect(Collectors.joining(","));
-            stmt.setString(3, statusForDb);
-            stmt.setString(4, log.getModifiedBy());
-            stmt.setString(5, log.getOrderOwner());
-
-            if (log.getTypeChanged() != null) {
-                stmt.setArray(6, connection.createArrayOf("text", log.getTypeChanged().toArray()));
-            } else {
-                stmt.setNull(6, Types.ARRAY);
+            int index = 1;
+            stmt.setString(index++, viewer);
+            if (orderOwner != null) {
+                stmt.setString(index++, orderOwner);
             }
+            stmt.setString(index++, viewer);
+            if (orderOwner != null) {
+                stmt.setString(index, orderOwner);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
 
-            PGobject jsonInitial = new PGobject();
-            jsonInitial.setType("jsonb");
-            jsonInitial.setValue(mapper.writeValueAsString(log.getDataInitial() != null ? log.getDataInitial() : new HashMap<>()));
-            stmt.setObject(7, jsonInitial);
-
-            PGobject jsonChanged = new PGobject();
-            jsonChanged.setType("jsonb");
-            jsonChanged.setValue(mapper.writeValueAsString(log.getDataChanged() != null ? log.getDataChanged() : new HashMap<>()));
-            stmt.setObject(8, jsonChanged);
-
-            // NEW: Prepare 'isRead' for insertion
-            PGobject jsonIsRead = new PGobject();
-            jsonIsRead.setType("jsonb");
-            // New changelogs start with an empty isRead map
-            jsonIsRead.setValue(mapper.writeValueAsString(log.getIsRead() != null ? log.getIsRead() : new HashMap<>()));
-            stmt.setObject(9, jsonIsRead);
-
-            stmt.executeUpdate();
+    /**
+     * Inserts a new change log entry into the order_history table.
+     *
+     * @param log The {@link ChangeLog} object containing the data to be inserted.
+     */
+    public void insertChangeLog(ChangeLog log) {
+        try {
+            insertChangeLogs(List.of(log));
             System.out.println("DAO: Successfully inserted changelog for Order ID: " + log.getOrderId());
         } catch (Exception e) {
             System.err.println("DAO Error inserting changelog: " + e.getMessage());
@@ -111,47 +176,57 @@ public class ChangeLogDao {
     }
 
     /**
-     * Retrieves change logs filtered strictly by a specific order owner.
-     * This method ensures a user only sees changes related to orders they own.
+     * Inserts change log entries into the order_history table with one multi-row statement.
+     * Only the changed fields are stored, the read markers start out with the column default.
      *
-     * @param orderOwner The ID of the order owner (e.g., company name or user ID) to filter by.
-     * @return A list of {@link ChangeLog} entries associated with the given orderOwner.
+     * @param logs The {@link ChangeLog} objects to insert, at least one.
+     * @throws SQLException If the insert fails, in which case none of the entries is stored.
      */
-    public List<ChangeLog> getChangeLogsByOrderOwner(String orderOwner) {
-        List<ChangeLog> logs = new ArrayList<>();
-        String query = "SELECT *, isRead FROM order_history WHERE order_owner = ? ORDER BY change_id DESC";
-
-        System.out.println("DAO: Attempting to retrieve changelogs for order owner: " + orderOwner + "...");
+    public void insertChangeLogs(List<ChangeLog> logs) throws SQLException, IOException {
+        StringBuilder query = new StringBuilder(
+                "INSERT INTO order_history (order_id, modified_at, change_status, modified_by, order_owner, type_changed, data_initial, data_changed) VALUES ");
+        for (int i = 0; i < logs.size(); i++) {
+            query.append(i == 0 ? "" : ", ").append("(?, ?, ?, ?, ?, ?, ?::jsonb, ?::jsonb)");
+        }
 
         try (Connection connection = DBProvider.getConnection(Role.SYSTEM);
-             PreparedStatement stmt = connection.prepareStatement(query)) {
-
-            stmt.setString(1, orderOwner);
-
-            try (ResultSet rs = stmt.executeQuery()) {
-                while (rs.next()) {
-                    logs.add(mapResultSetToChangeLog(rs));
+             PreparedStatement stmt = connection.prepareStatement(query.toString())) {
+            int index = 1;
+            for (ChangeLog log : logs) {
+                stmt.setInt(index++, log.getOrderId());
+                stmt.setTimestamp(index++, log.getModifiedAt());
+                String statusForDb = log.getChangeStatus().stream()
+                        .map(ChangeStatus::getDbValue)
+                        .collect(Collectors.joining(","));
+                stmt.setString(index++, statusForDb);
+                stmt.setString(index++, log.getModifiedBy());
+                stmt.setString(index++, log.getOrderOwner());
+                if (log.getTypeChanged() != null) {
+                    stmt.setArray(index++, connection.createArrayOf("text", log.getTypeChanged().toArray()));
+                } else {
+                    stmt.setNull(index++, Types.ARRAY);
                 }
-                System.out.println("DAO: Successfully retrieved " + logs.size() + " changelog entries for order owner: " + orderOwner + ".");
+                stmt.setString(index++, toJson(log.getDataInitial()));
+                stmt.setString(index++, toJson(log.getDataChanged()));
             }
-        } catch (SQLException e) {
-            System.err.println("DAO SQL Error retrieving changelogs for order owner " + orderOwner + ": " + e.getMessage());
-            e.printStackTrace();
-        } catch (Exception e) {
-            System.err.println("DAO Unexpected Error retrieving changelogs for order owner " + orderOwner + ": " + e.getMessage());
-            e.printStackTrace();
+            stmt.executeUpdate();
+            connection.commit();
         }
-        return logs;
+    }
+
+    private String toJson(Map<String, Object> data) throws IOException {
+        return data == null || data.isEmpty() ? "{}" : mapper.writeValueAsString(data);
     }
 
     /**
      * Helper method to map a ResultSet row to a ChangeLog object.
      *
-     * @param rs The ResultSet containing the current row's data.
+     * @param rs          The ResultSet containing the current row's data.
+     * @param includeData Whether the row has the data_initial and data_changed columns.
      * @return A {@link ChangeLog} object populated with data from the ResultSet.
      * @throws SQLException If a database access error occurs.
      */
-    private ChangeLog mapResultSetToChangeLog(ResultSet rs) throws SQLException {
+    private ChangeLog mapResultSetToChangeLog(ResultSet rs, boolean includeData) throws SQLException {
         ChangeLog log = new ChangeLog();
         log.setChangeId(rs.getInt("change_id"));
         log.setOrderId(rs.getInt("order_id"));
@@ -192,10 +267,14 @@ public class ChangeLogDao {
             log.setTypeChanged(List.of());
         }
 
+        if (!includeData) {
+            log.setDataInitial(new HashMap<>());
+            log.setDataChanged(new HashMap<>());
+            return log;
+        }
+
         String jsonInitial = rs.getString("data_initial");
         String jsonChanged = rs.getString("data_changed");
-        // NEW: Get 'isRead' JSONB string
-        String jsonIsRead = rs.getString("isRead");
 
         try {
             if (jsonInitial != null && !jsonInitial.isEmpty()) {
@@ -209,28 +288,22 @@ public class ChangeLogDao {
             } else {
                 log.setDataChanged(new HashMap<>());
             }
-
-            // NEW: Parse 'isRead' JSONB data
-            if (jsonIsRead != null && !jsonIsRead.isEmpty()) {
-                // We're expecting a Map<String, String> (username -> timestamp string)
-                log.setIsRead(mapper.readValue(jsonIsRead, new com.fasterxml.jackson.core.type.TypeReference<Map<String, String>>() {
-                }));
-            } else {
-                log.setIsRead(new HashMap<>()); // Default to empty map if null or empty
-            }
-
         } catch (Exception e) {
-            System.err.println("Error parsing JSONB data for ChangeLog ID " + log.getChangeId() + ". Initial JSON: '" + jsonInitial + "', Changed JSON: '" + jsonChanged + "', isRead JSON: '" + jsonIsRead + "'. Error: " + e.getMessage());
+            System.err.println("Error parsing JSONB data for ChangeLog ID " + log.getChangeId() + ". Initial JSON: '" + jsonInitial + "', Changed JSON: '" + jsonChanged + "'. Error: " + e.getMessage());
             log.setDataInitial(new HashMap<>());
             log.setDataChanged(new HashMap<>());
-            log.setIsRead(new HashMap<>()); // Ensure it's initialized even on error
         }
         return log;
     }
 
     /**
      * Marks specified change logs as read by a given user.
-     * This updates the 'isRead' JSONB column by adding/updating the user's read timestamp.
+     * <p>
+     * Read state is kept per user and order owner as a watermark, the highest change ID up to
+     * which everything has been read, plus exceptions for logs read above it. The logs are first
+     * recorded as exceptions, then the watermark of each affected owner is moved up to just
+     * before its first log that is still unread, and the exceptions it passed are dropped. Marking
+     * the newest logs of an owner, which is the usual case, thus leaves no exceptions behind.
      *
      * @param changeIds A list of change log IDs to mark as read.
      * @param username  The username of the user who is marking the logs as read.
@@ -241,51 +314,66 @@ public class ChangeLogDao {
             return;
         }
 
-        // Generate placeholders for the IN clause (?, ?, ?)
-        String inSql = String.join(",", Collections.nCopies(changeIds.size(), "?"));
-
-        // SQL to update the JSONB column:
-        // We use 'jsonb_set' for precise updates.
-        // '{}' is the initial value if the key doesn't exist (though our default is '{}').
-        // '{username}' is the path for the key.
-        // to_jsonb(CURRENT_TIMESTAMP::text) converts the current timestamp to a JSONB string value.
-        // 'true' means create_if_missing.
-        String query = String.format(
-                "UPDATE order_history SET isRead = jsonb_set(isRead, ARRAY[?], to_jsonb(?::text), true) " +
-                        "WHERE change_id IN (%s)", inSql
-        );
+        String exceptionsQuery = """
+                INSERT INTO changelog_read_exceptions (username, change_id)
+                SELECT ?, h.change_id
+                FROM order_history h
+                LEFT JOIN changelog_reads r ON r.username = ? AND r.order_owner = h.order_owner
+                WHERE h.change_id = ANY (?) AND h.change_id > COALESCE(r.last_read_change_id, 0)
+                ON CONFLICT DO NOTHING
+                """;
+        String watermarkQuery = """
+                INSERT INTO changelog_reads (username, order_owner, last_read_change_id)
+                SELECT ?, o.order_owner,
+                       COALESCE((SELECT MIN(h.change_id) - 1 FROM order_history h
+                                 WHERE h.order_owner = o.order_owner
+                                   AND h.change_id > COALESCE(r.last_read_change_id, 0)
+                                   AND NOT EXISTS (SELECT 1 FROM changelog_read_exceptions e
+                                                   WHERE e.username = ? AND e.change_id = h.change_id)),
+                                (SELECT MAX(h.change_id) FROM order_history h
+                                 WHERE h.order_owner = o.order_owner))
+                FROM (SELECT DISTINCT order_owner FROM order_history WHERE change_id = ANY (?)) o
+                LEFT JOIN changelog_reads r ON r.username = ? AND r.order_owner = o.order_owner
+                ON CONFLICT (username, order_owner) DO UPDATE
+                SET last_read_change_id = GREATEST(changelog_reads.last_read_change_id,
+                                                   EXCLUDED.last_read_change_id)
+                """;
+        String cleanupQuery = """
+                DELETE FROM changelog_read_exceptions e
+                USING order_history h, changelog_reads r
+                WHERE e.username = ? AND h.change_id = e.change_id
+                  AND r.username = e.username AND r.order_owner = h.order_owner
+                  AND e.change_id <= r.last_read_change_id
+                """;
 
         System.out.println("DAO: Attempting to mark changelogs as read for user: " + username + " IDs: " + changeIds);
-        System.out.println("DAO: SQL Query for markLogsAsRead: " + query); // Debugging: Print the full query
 
-        try (Connection connection = DBProvider.getConnection(Role.SYSTEM);
-             PreparedStatement stmt = connection.prepareStatement(query)) {
-
-            // Explicitly set auto-commit to true for this connection if it's not the default in DBProvider
-            connection.setAutoCommit(true);
+        try (Connection connection = DBProvider.getConnection(Role.SYSTEM)) {
+            Array ids = connection.createArrayOf("integer", changeIds.toArray());
 
-            // Set the username and current timestamp for the jsonb_set function
-            int paramIndex = 1;
-            String currentTimestampStr = LocalDateTime.now().format(ISO_FORMATTER);
-            stmt.setString(paramIndex++, username); // First '?' in ARRAY[?]
-            stmt.setString(paramIndex++, currentTimestampStr); // Second '?' for to_jsonb(?::text)
-            System.out.println("DAO: Binding username '" + username + "' and timestamp '" + currentTimestampStr + "'"); // Debugging: confirm bindings
-
-            // Set the change IDs for the IN clause
-            for (Integer id : changeIds) {
-                stmt.setInt(paramIndex++, id);
+            try (PreparedStatement stmt = connection.prepareStatement(exceptionsQuery)) {
+                stmt.setString(1, username);
+                stmt.setString(2, username);
+                stmt.setArray(3, ids);
+                stmt.executeUpdate();
             }
-            System.out.println("DAO: Binding change IDs: " + changeIds); // Debugging: confirm IDs
-
-            int updatedRows = stmt.executeUpdate();
-            System.out.println("DAO: Successfully marked " + updatedRows + " changelog entries as read for user: " + username);
+            try (PreparedStatement stmt = connection.prepareStatement(watermarkQuery)) {
+                stmt.setString(1, username);
+                stmt.setString(2, username);
+                stmt.setArray(3, ids);
+                stmt.setString(4, username);
+                stmt.executeUpdate();
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(cleanupQuery)) {
+                stmt.setString(1, username);
+                stmt.executeUpdate();
+            }
+            connection.commit();
+            System.out.println("DAO: Successfully marked changelog entries as read for user: " + username);
 
         } catch (SQLException e) {
             System.err.println("DAO SQL Error marking changelogs as read for user " + username + ": " + e.getMessage());
             e.printStackTrace();
-        } catch (Exception e) {
-            System.err.println("DAO Unexpected Error marking changelogs as read for user " + username + ": " + e.getMessage());
-            e.printStackTrace();
         }
     }
 }
\ No newline at end of file
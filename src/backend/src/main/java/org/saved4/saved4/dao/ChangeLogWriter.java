@@ -0,0 +1,114 @@
+package org.saved4.saved4.dao;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.saved4.saved4.dto.ChangeLog;
+
+/**
+ * Writes change log entries in the background, so order updates do not wait for their audit
+ * trail.
+ * <p>
+ * Entries are queued in a bounded queue and a single worker thread inserts them in batches of
+ * up to {@link #BATCH_SIZE} rows with one statement. When the queue is full the entry is written
+ * on the caller's thread instead of being dropped. If a batch fails, its entries are retried one
+ * by one so a single bad row does not take the others with it. {@link #shutdown()} writes
+ * whatever is still queued when the container stops, before the connection pool is closed.
+ */
+@ApplicationScoped
+public class ChangeLogWriter {
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final int BATCH_SIZE = 500;
+    private static final long POLL_INTERVAL_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long SHUTDOWN_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+
+    @Inject
+    private ChangeLogDao changeLogDao;
+
+    private final BlockingQueue<ChangeLog> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private volatile boolean shutdown;
+    private volatile Thread worker;
+
+    void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+        start();
+    }
+
+    /**
+     * Starts the worker thread. Calling it again has no effect.
+     */
+    public synchronized void start() {
+        if (worker != null || shutdown) {
+            return;
+        }
+        Thread thread = new Thread(this::run, "changelog-writer");
+        thread.setDaemon(true);
+        thread.start();
+        worker = thread;
+    }
+
+    /**
+     * Queues a change log entry for insertion.
+     */
+    public void submit(ChangeLog log) {
+        if (worker == null || shutdown || !queue.offer(log)) {
+            changeLogDao.insertChangeLog(log);
+        }
+    }
+
+    /**
+     * Stops the worker once the queue is written, waiting at most {@link #SHUTDOWN_TIMEOUT_MS},
+     * and writes anything queued after that on the calling thread.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (worker != null) {
+            try {
+                worker.join(SHUTDOWN_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // entries offered while the worker was finishing
+        List<ChangeLog> batch = new ArrayList<>(BATCH_SIZE);
+        while (queue.drainTo(batch, BATCH_SIZE) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void run() {
+        List<ChangeLog> batch = new ArrayList<>(BATCH_SIZE);
+        while (!shutdown || !queue.isEmpty()) {
+            try {
+                ChangeLog first = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<ChangeLog> batch) {
+        try {
+            changeLogDao.insertChangeLogs(batch);
+        } catch (Exception e) {
+            System.err.println("Error writing " + batch.size() + " changelogs, retrying one by one: " +
+                                       e.getMessage());
+            batch.forEach(changeLogDao::insertChangeLog);
+        }
+    }
+}
@@ -17,100 +17,89 @@ public class ChatDao {
     public String create(Role role, Chat chat) throws SQLException {
         String stmt = "INSERT INTO chats (company) VALUES (?)";
 
-        Connection conn = DBProvider.getConnection(role);
-        PreparedStatement preparedStmt = conn.prepareStatement(stmt);
+        try (Connection conn = DBProvider.getConnection(role)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(stmt);
 
-        preparedStmt.setString(1, chat.getCompany());
+            preparedStmt.setString(1, chat.getCompany());
 
-        preparedStmt.executeUpdate();
-        conn.commit();
-        return chat.getCompany();
+            preparedStmt.executeUpdate();
+            conn.commit();
+            return chat.getCompany();
 
+        }
     }
 
     public Chat getByCompany(Role role, String dbRequester, String company) throws SQLException {
         String query = """
-                 SELECT c.unread, m.message_id, m.time, m.sender, m.body\s
+                 SELECT c.company, c.unread, c.last_message_id, c.last_message_time, c.last_message_sender, c.last_message_body\s
                  FROM chats c\s
                  JOIN users u ON c.company = u.username\s
-                 LEFT JOIN messages m ON c.company = m.company\s
-                 WHERE c.company = ? AND u.is_active = true\s
-                 ORDER BY m.time DESC\s
-                 LIMIT 1
+                 WHERE c.company = ? AND u.is_active = true
                 \s""";
 
-        Connection conn = DBProvider.getConnection(role, dbRequester);
-        PreparedStatement preparedStmt = conn.prepareStatement(query);
-        preparedStmt.setString(1, company);
-
-        ResultSet resultSet = preparedStmt.executeQuery();
-        if (!resultSet.next()) return null;
+        try (Connection conn = DBProvider.getConnection(role, dbRequester);
+             PreparedStatement preparedStmt = conn.prepareStatement(query)) {
+            preparedStmt.setString(1, company);
 
-        int unread = resultSet.getInt("unread");
-
-        // Get last message if exists
-        Message lastMsg = null;
-        int messageId = resultSet.getInt("message_id");
-        if (!resultSet.wasNull()) {
-            Timestamp time = resultSet.getTimestamp("time");
-            String sender = resultSet.getString("sender");
-            String body = resultSet.getString("body");
-            lastMsg = new Message(messageId, company, time, sender, body);
+            try (ResultSet resultSet = preparedStmt.executeQuery()) {
+                if (!resultSet.next()) return null;
+                return new Chat(company, company, resultSet.getInt("unread"), lastMessage(resultSet));
+            }
         }
-
-        return new Chat(company, company, unread, lastMsg);
     }
 
+    /**
+     * Lists the chats of all active companies, most recent message first and chats without
+     * messages last. Reads only the summary kept on {@code chats}, not the messages.
+     */
     public List<AdminChat> list(Role role) throws SQLException {
         String query = """
-                 SELECT c.company, c.unread, m.message_id, m.time, m.sender, m.body\s
+                 SELECT c.company, c.unread, c.last_message_id, c.last_message_time, c.last_message_sender, c.last_message_body\s
                  FROM chats c\s
                  JOIN users u ON c.company = u.username\s
-                 LEFT JOIN messages m ON c.company = m.company\s
                  WHERE u.is_active = TRUE\s
-                 AND m.time = (
-                     SELECT MAX(m2.time)\s
-                     FROM messages m2\s
-                     WHERE m2.company = c.company
-                 )
-                 ORDER BY m.time DESC
+                 ORDER BY c.last_message_time DESC NULLS LAST
                 \s""";
 
-        Connection conn = DBProvider.getConnection(role);
-        Statement stmt = conn.createStatement();
-
-        List<AdminChat> chats = new ArrayList<>();
-        ResultSet resultSet = stmt.executeQuery(query);
-        while (resultSet.next()) {
-            String company = resultSet.getString("company");
-            int unread = resultSet.getInt("unread");
-
-            // Get last message if exists
-            Message lastMsg = null;
-            int lastMessageId = resultSet.getInt("message_id");
-            if (!resultSet.wasNull()) {
-                Timestamp time = resultSet.getTimestamp("time");
-                String sender = resultSet.getString("sender");
-                String body = resultSet.getString("body");
-                lastMsg = new Message(lastMessageId, company, time, sender, body);
+        try (Connection conn = DBProvider.getConnection(role);
+             Statement stmt = conn.createStatement();
+             ResultSet resultSet = stmt.executeQuery(query)) {
+            List<AdminChat> chats = new ArrayList<>();
+            while (resultSet.next()) {
+                chats.add(new AdminChat(resultSet.getString("company"), resultSet.getInt("unread"),
+                                        lastMessage(resultSet)));
             }
+            return chats;
+        }
+    }
 
-            chats.add(new AdminChat(company, unread, lastMsg));
+    /**
+     * Returns the last message summarized on the current row, null if the chat has none. The body
+     * is a preview of at most 200 characters.
+     */
+    private static Message lastMessage(ResultSet resultSet) throws SQLException {
+        int messageId = resultSet.getInt("last_message_id");
+        if (resultSet.wasNull()) {
+            return null;
         }
-        return chats;
+        return new Message(messageId, resultSet.getString("company"),
+                           resultSet.getTimestamp("last_message_time"),
+                           resultSet.getString("last_message_sender"),
+                           resultSet.getString("last_message_body"));
     }
 
     public boolean updateUnread(Role role, int company, int updatedUnread) throws SQLException {
         String query = "UPDATE chats c SET unread = ? FROM users u WHERE  c.company = ? AND c.company = u.username AND u.is_active = TRUE;";
 
-        Connection conn = DBProvider.getConnection(role);
-        PreparedStatement preparedStmt = conn.prepareStatement(query);
+        try (Connection conn = DBProvider.getConnection(role)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(query);
 
-        preparedStmt.setInt(1, updatedUnread);
-        preparedStmt.setInt(2, company);
+            preparedStmt.setInt(1, updatedUnread);
+            preparedStmt.setInt(2, company);
 
-        int affectedRows = preparedStmt.executeUpdate();
-        conn.commit();
-        return affectedRows > 0;
+            int affectedRows = preparedStmt.executeUpdate();
+            conn.commit();
+            return affectedRows > 0;
+        }
     }
 }
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 import org.postgresql.geometric.PGpoint;
 import org.saved4.saved4.DBProvider;
+import org.saved4.saved4.auth.PrincipalCache;
 import org.saved4.saved4.dto.Company;
 import org.saved4.saved4.dto.User;
 import org.saved4.saved4.enums.Role;
@@ -17,6 +18,8 @@ public class CompanyDao {
 
     @Inject
     UserDao userDao;
+    @Inject
+    PrincipalCache principalCache;
 
     /**
      * Returns the first @param Limit number of rows from the company table in the database.
@@ -29,15 +32,16 @@ public class CompanyDao {
                 "SELECT c.name, c.username, c.location, c.opening_time, c.closing_time, u.email FROM companies c, users u" +
                         " WHERE c.username = u.username AND u.is_active = TRUE";
 
-        Connection connection = DBProvider.getConnection(role);
-        PreparedStatement pb = connection.prepareStatement(query);
-        ResultSet result = pb.executeQuery();
+        try (Connection connection = DBProvider.getConnection(role)) {
+            PreparedStatement pb = connection.prepareStatement(query);
+            ResultSet result = pb.executeQuery();
 
-        List<Company> companyList = new ArrayList<>();
-        while (result.next()) {
-            companyList.add(mapToCompany(result));
+            List<Company> companyList = new ArrayList<>();
+            while (result.next()) {
+                companyList.add(mapToCompany(result));
+            }
+            return companyList;
         }
-        return companyList;
     }
 
     /**
@@ -79,24 +83,25 @@ public class CompanyDao {
                 "INSERT INTO companies (username, name, location, opening_time, closing_time) VALUES (?, ?, ?, ?, ?);";
         String chatInsertStmt = "INSERT INTO chats (company) VALUES (?)";
 
-        Connection conn = DBProvider.getConnection(role);
-        PreparedStatement companyPreparedStmt = conn.prepareStatement(companyInsertStmt);
+        try (Connection conn = DBProvider.getConnection(role)) {
+            PreparedStatement companyPreparedStmt = conn.prepareStatement(companyInsertStmt);
 
-        companyPreparedStmt.setString(1, newCompany.getUsername());
-        companyPreparedStmt.setString(2, newCompany.getName());
-        companyPreparedStmt.setObject(3, newCompany.getLocation());
-        companyPreparedStmt.setObject(4, newCompany.getOpeningTime());
-        companyPreparedStmt.setObject(5, newCompany.getClosingTime());
+            companyPreparedStmt.setString(1, newCompany.getUsername());
+            companyPreparedStmt.setString(2, newCompany.getName());
+            companyPreparedStmt.setObject(3, newCompany.getLocation());
+            companyPreparedStmt.setObject(4, newCompany.getOpeningTime());
+            companyPreparedStmt.setObject(5, newCompany.getClosingTime());
 
-        PreparedStatement chatPreparedStmt = conn.prepareStatement(chatInsertStmt);
+            PreparedStatement chatPreparedStmt = conn.prepareStatement(chatInsertStmt);
 
-        chatPreparedStmt.setString(1, newCompany.getUsername());
+            chatPreparedStmt.setString(1, newCompany.getUsername());
 
-        companyPreparedStmt.executeUpdate();
-        chatPreparedStmt.executeUpdate();
-        conn.commit();
+            companyPreparedStmt.executeUpdate();
+            chatPreparedStmt.executeUpdate();
+            conn.commit();
 
-        return newCompany.getUsername();
+            return newCompany.getUsername();
+        }
     }
 
     public boolean update(Role role, String dbRequester, String username, Company company)
@@ -192,13 +197,15 @@ public class CompanyDao {
     public boolean delete(Role role, String dbRequester, String username) throws SQLException {
         String stmt =
                 "UPDATE users u SET is_active = FALSE FROM companies c WHERE u.username = ? AND u.username = c.username AND u.is_active = TRUE";
-        Connection conn = DBProvider.getConnection(role, dbRequester);
-        PreparedStatement preparedStmt = conn.prepareStatement(stmt);
-        preparedStmt.setString(1, username);
+        try (Connection conn = DBProvider.getConnection(role, dbRequester)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(stmt);
+            preparedStmt.setString(1, username);
 
-        int affectedRows = preparedStmt.executeUpdate();
-        conn.commit();
-        return affectedRows > 0;
+            int affectedRows = preparedStmt.executeUpdate();
+            conn.commit();
+            principalCache.invalidate(username);
+            return affectedRows > 0;
+        }
     }
 
     public List<User> getAllCompaniesDB(Role role) throws SQLException {
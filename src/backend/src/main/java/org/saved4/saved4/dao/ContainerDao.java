@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.List;
 import org.saved4.saved4.DBProvider;
 import org.saved4.saved4.dto.Container;
+import org.saved4.saved4.enums.ContainerStatus;
 import org.saved4.saved4.enums.Role;
 
 @Singleton
@@ -13,35 +14,37 @@ public class ContainerDao {
     public Container getById(Role role, int id) throws SQLException {
         String query = "SELECT * FROM containers WHERE container_id = ? AND is_active = TRUE";
 
-        Connection conn = DBProvider.getConnection(role);
-        PreparedStatement preparedStmt = conn.prepareStatement(query);
-        preparedStmt.setInt(1, id);
+        try (Connection conn = DBProvider.getConnection(role)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(query);
+            preparedStmt.setInt(1, id);
 
-        ResultSet resultSet = preparedStmt.executeQuery();
-        if (!resultSet.next()) {
-            return null;
+            ResultSet resultSet = preparedStmt.executeQuery();
+            if (!resultSet.next()) {
+                return null;
+            }
+            int containerId = resultSet.getInt("container_id");
+            float maxWeight = resultSet.getFloat("max_weight");
+            return new Container(containerId, maxWeight);
         }
-        int containerId = resultSet.getInt("container_id");
-        float maxWeight = resultSet.getFloat("max_weight");
-        return new Container(containerId, maxWeight);
     }
 
     public List<Container> list(Role role) throws SQLException {
 
         String query = "SELECT * FROM containers WHERE is_active = TRUE;";
 
-        Connection conn = DBProvider.getConnection(role);
-        Statement stmt = conn.createStatement();
+        try (Connection conn = DBProvider.getConnection(role)) {
+            Statement stmt = conn.createStatement();
 
-        List<Container> containers = new ArrayList<>();
-        ResultSet resultSet = stmt.executeQuery(query);
-        while (resultSet.next()) {
-            int containerId = resultSet.getInt("container_id");
-            float maxWeight = resultSet.getFloat("max_weight");
+            List<Container> containers = new ArrayList<>();
+            ResultSet resultSet = stmt.executeQuery(query);
+            while (resultSet.next()) {
+                int containerId = resultSet.getInt("container_id");
+                float maxWeight = resultSet.getFloat("max_weight");
 
-            containers.add(new Container(containerId, maxWeight));
+                containers.add(new Container(containerId, maxWeight));
+            }
+            return containers;
         }
-        return containers;
     }
 
     public List<Container> list(Role role, String dbRequester, String atCompany, Timestamp twStart,
@@ -51,45 +54,47 @@ public class ContainerDao {
                 " containers c WHERE c.is_active = TRUE AND destination = ? AND tw_end < ? AND NOT EXISTS (SELECT 1" +
                 " FROM orders o WHERE o.container_id = last_orders.container_id AND o.tw_start < ? AND o.tw_end > ?);";
 
-        Connection conn = DBProvider.getConnection(role, dbRequester);
-        PreparedStatement preparedStmt = conn.prepareStatement(query);
-        preparedStmt.setString(1, atCompany);
-        preparedStmt.setTimestamp(2, twStart);
-        preparedStmt.setTimestamp(3, twEnd);
-        preparedStmt.setTimestamp(4, twStart);
+        try (Connection conn = DBProvider.getConnection(role, dbRequester)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(query);
+            preparedStmt.setString(1, atCompany);
+            preparedStmt.setTimestamp(2, twStart);
+            preparedStmt.setTimestamp(3, twEnd);
+            preparedStmt.setTimestamp(4, twStart);
 
-        List<Container> containers = new ArrayList<>();
-        ResultSet resultSet = preparedStmt.executeQuery();
-        while (!resultSet.next()) {
-            int containerId = resultSet.getInt("container_id");
-            float maxWeight = resultSet.getFloat("max_weight");
+            List<Container> containers = new ArrayList<>();
+            ResultSet resultSet = preparedStmt.executeQuery();
+            while (!resultSet.next()) {
+                int containerId = resultSet.getInt("container_id");
+                float maxWeight = resultSet.getFloat("max_weight");
 
-            containers.add(new Container(containerId, maxWeight));
+                containers.add(new Container(containerId, maxWeight));
+            }
+            return containers;
         }
-        return containers;
     }
 
     public Integer create(Role role, Container container) throws SQLException {
-        Connection conn = DBProvider.getConnection(role);
-        PreparedStatement preparedStmt;
-        String stmt;
-        if (container.getContainerId() == null) {
-            stmt = "INSERT INTO containers (max_weight) VALUES (?);";
-            preparedStmt = conn.prepareStatement(stmt, Statement.RETURN_GENERATED_KEYS);
-            preparedStmt.setInt(1, container.getContainerId());
-        } else {
-            stmt = "INSERT INTO containers (container_id, max_weight) VALUES (?, ?);";
-            preparedStmt = conn.prepareStatement(stmt, Statement.RETURN_GENERATED_KEYS);
-        }
-        preparedStmt.setFloat(1, container.getMaxWeight());
-
-        preparedStmt.executeUpdate();
-        conn.commit();
-        ResultSet generatedKeys = preparedStmt.getGeneratedKeys();
-        if (generatedKeys.next()) {
-            return generatedKeys.getInt(1);
-        } else {
-            throw new SQLException("Creating user failed, no ID obtained.");
+        try (Connection conn = DBProvider.getConnection(role)) {
+            PreparedStatement preparedStmt;
+            String stmt;
+            if (container.getContainerId() == null) {
+                stmt = "INSERT INTO containers (max_weight) VALUES (?);";
+                preparedStmt = conn.prepareStatement(stmt, Statement.RETURN_GENERATED_KEYS);
+                preparedStmt.setInt(1, container.getContainerId());
+            } else {
+                stmt = "INSERT INTO containers (container_id, max_weight) VALUES (?, ?);";
+                preparedStmt = conn.prepareStatement(stmt, Statement.RETURN_GENERATED_KEYS);
+            }
+            preparedStmt.setFloat(1, container.getMaxWeight());
+
+            preparedStmt.executeUpdate();
+            conn.commit();
+            ResultSet generatedKeys = preparedStmt.getGeneratedKeys();
+            if (generatedKeys.next()) {
+                return generatedKeys.getInt(1);
+            } else {
+                throw new SQLException("Creating user failed, no ID obtained.");
+            }
         }
     }
 
@@ -179,16 +184,35 @@ public class ContainerDao {
         return updateSuccessful;
     }
 
+    /**
+     * Sets the status of an active container inside the given unit of work, without reading it
+     * first.
+     *
+     * @return true if the container exists and is active, false otherwise.
+     */
+    public boolean updateStatus(UnitOfWork work, int containerId, ContainerStatus status)
+            throws SQLException {
+        String stmt =
+                "UPDATE containers SET container_status = ?::container_status WHERE container_id = ? AND is_active = TRUE;";
+
+        try (PreparedStatement preparedStmt = work.getConnection().prepareStatement(stmt)) {
+            preparedStmt.setString(1, status.name());
+            preparedStmt.setInt(2, containerId);
+            return preparedStmt.executeUpdate() > 0;
+        }
+    }
+
     public boolean delete(Role role, int containerId) throws SQLException {
         String stmt =
                 "UPDATE containers SET isActive = FALSE WHERE container_id = ? AND is_active = TRUE;";
 
-        Connection conn = DBProvider.getConnection(role);
-        PreparedStatement preparedStmt = conn.prepareStatement(stmt);
-        preparedStmt.setInt(1, containerId);
+        try (Connection conn = DBProvider.getConnection(role)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(stmt);
+            preparedStmt.setInt(1, containerId);
 
-        int affectedRows = preparedStmt.executeUpdate();
-        conn.commit();
-        return affectedRows > 0;
+            int affectedRows = preparedStmt.executeUpdate();
+            conn.commit();
+            return affectedRows > 0;
+        }
     }
 }
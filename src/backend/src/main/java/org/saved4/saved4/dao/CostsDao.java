@@ -15,16 +15,17 @@ import java.util.List;
 public class CostsDao {
     public Costs get(Role role) throws SQLException {
         String query = "SELECT * FROM costs;";
-        Connection conn = DBProvider.getConnection(role);
-        ResultSet resultSet = conn.createStatement().executeQuery(query);
-        if (!resultSet.next()) {
-            return null;
+        try (Connection conn = DBProvider.getConnection(role)) {
+            ResultSet resultSet = conn.createStatement().executeQuery(query);
+            if (!resultSet.next()) {
+                return null;
+            }
+            float empty = resultSet.getFloat("empty_ctr");
+            float full = resultSet.getFloat("full_ctr");
+            float perKm = resultSet.getFloat("per_km");
+
+            return new Costs(empty, full, perKm);
         }
-        float empty = resultSet.getFloat("empty_ctr");
-        float full = resultSet.getFloat("full_ctr");
-        float perKm = resultSet.getFloat("per_km");
-
-        return new Costs(empty, full, perKm);
     }
 
     public boolean update(Role role, Costs costs) throws SQLException {
@@ -49,9 +50,10 @@ public class CostsDao {
         }
         stmt.setLength(stmt.length() - 2);
 
-        Connection conn = DBProvider.getConnection(role);
-        int affectedRows = conn.createStatement().executeUpdate(stmt.toString());
-        conn.commit();
-        return affectedRows > 0;
+        try (Connection conn = DBProvider.getConnection(role)) {
+            int affectedRows = conn.createStatement().executeUpdate(stmt.toString());
+            conn.commit();
+            return affectedRows > 0;
+        }
     }
 }
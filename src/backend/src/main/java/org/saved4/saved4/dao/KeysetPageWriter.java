@@ -0,0 +1,51 @@
+package org.saved4.saved4.dao;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.util.function.ToIntFunction;
+
+/**
+ * Writes the rows of one keyset page to a JSON array and remembers whether a row beyond the page
+ * was seen. The query must fetch {@code limit + 1} rows, ordered by the key, so the extra row
+ * tells whether there is a next page without counting.
+ *
+ * @param <T> the type each row is mapped to
+ */
+public final class KeysetPageWriter<T> implements RowHandler<T> {
+    private final JsonGenerator generator;
+    private final int limit;
+    private final ToIntFunction<T> key;
+    private int written;
+    private int lastKey;
+    private boolean hasMore;
+
+    /**
+     * @param generator The generator the rows are written to, positioned inside an array.
+     * @param limit     The page size.
+     * @param key       Returns the keyset column of a row, e.g. its ID.
+     */
+    public KeysetPageWriter(JsonGenerator generator, int limit, ToIntFunction<T> key) {
+        this.generator = generator;
+        this.limit = limit;
+        this.key = key;
+    }
+
+    @Override
+    public void handle(T row) throws IOException {
+        if (written == limit) {
+            hasMore = true;
+            return;
+        }
+        generator.writeObject(row);
+        written++;
+        lastKey = key.applyAsInt(row);
+    }
+
+    /**
+     * @return The key of the last written row to request the next page with, or null if this
+     * was the last page.
+     */
+    public Integer nextAfterId() {
+        return hasMore ? lastKey : null;
+    }
+}
@@ -7,6 +7,7 @@ import org.saved4.saved4.enums.Role;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Singleton
@@ -15,41 +16,71 @@ public class MessageDao {
     public Integer create(Message message, Role role) throws SQLException {
         String stmt = "INSERT INTO messages (company, time, body, sender) VALUES (?, ?, ?, ?)";
 
-        Connection conn = DBProvider.getConnection(role, message.getSender());
-        PreparedStatement preparedStmt = conn.prepareStatement(stmt, Statement.RETURN_GENERATED_KEYS);
+        try (Connection conn = DBProvider.getConnection(role, message.getSender())) {
+            PreparedStatement preparedStmt = conn.prepareStatement(stmt, Statement.RETURN_GENERATED_KEYS);
 
-        preparedStmt.setString(1, message.getCompany());
-        preparedStmt.setTimestamp(2, message.getTime());
-        preparedStmt.setString(3, message.getBody());
-        preparedStmt.setString(4, message.getSender());
+            preparedStmt.setString(1, message.getCompany());
+            preparedStmt.setTimestamp(2, message.getTime());
+            preparedStmt.setString(3, message.getBody());
+            preparedStmt.setString(4, message.getSender());
 
-        preparedStmt.executeUpdate();
-        conn.commit();
-        ResultSet generatedKeys = preparedStmt.getGeneratedKeys();
-        if (generatedKeys.next()) {
-            return generatedKeys.getInt(1);
-        } else {
-            throw new SQLException("Creating user failed, no ID obtained.");
+            preparedStmt.executeUpdate();
+            conn.commit();
+            ResultSet generatedKeys = preparedStmt.getGeneratedKeys();
+            if (generatedKeys.next()) {
+                return generatedKeys.getInt(1);
+            } else {
+                throw new SQLException("Creating user failed, no ID obtained.");
+            }
         }
     }
 
-    public List<Message> list(String company, String requester, Role role) throws SQLException {
-        String query = "SELECT * FROM messages WHERE company = ?";
+    /**
+     * Lists one page of the messages of a company chat, oldest first.
+     * <p>
+     * With {@code afterId} the page holds the first {@code limit} messages newer than it, so a
+     * client can fetch what it missed. Otherwise it holds the {@code limit} newest messages older
+     * than {@code beforeId}, or the newest messages at all when that is null too. Both walk the
+     * {@code (company, message_id)} index.
+     */
+    public List<Message> list(String company, String requester, Role role, Integer afterId,
+                              Integer beforeId, int limit) throws SQLException {
+        String query;
+        if (afterId != null) {
+            query = "SELECT * FROM messages WHERE company = ? AND message_id > ? ORDER BY message_id LIMIT ?";
+        } else if (beforeId != null) {
+            query = "SELECT * FROM messages WHERE company = ? AND message_id < ? ORDER BY message_id DESC LIMIT ?";
+        } else {
+            query = "SELECT * FROM messages WHERE company = ? ORDER BY message_id DESC LIMIT ?";
+        }
 
-        Connection conn = DBProvider.getConnection(role, requester);
-        PreparedStatement preparedStmt = conn.prepareStatement(query);
-        preparedStmt.setString(1, company);
+        try (Connection conn = DBProvider.getConnection(role, requester);
+             PreparedStatement preparedStmt = conn.prepareStatement(query)) {
+            int index = 1;
+            preparedStmt.setString(index++, company);
+            if (afterId != null) {
+                preparedStmt.setInt(index++, afterId);
+            } else if (beforeId != null) {
+                preparedStmt.setInt(index++, beforeId);
+            }
+            preparedStmt.setInt(index, limit);
 
-        List<Message> messages = new ArrayList<>();
-        ResultSet resultSet = preparedStmt.executeQuery();
-        while (resultSet.next()) {
-            int messageId = resultSet.getInt("message_id");
-            Timestamp time = resultSet.getTimestamp("time");
-            String sender = resultSet.getString("sender");
-            String body = resultSet.getString("body");
+            List<Message> messages = new ArrayList<>();
+            try (ResultSet resultSet = preparedStmt.executeQuery()) {
+                while (resultSet.next()) {
+                    int messageId = resultSet.getInt("message_id");
+                    Timestamp time = resultSet.getTimestamp("time");
+                    String sender = resultSet.getString("sender");
+                    String body = resultSet.getString("body");
 
-            messages.add(new Message(messageId, company, time, sender, body));
+                    messages.add(new Message(messageId, company, time, sender, body));
+                }
+            }
+            if (afterId == null) {
+                // read newest first to stop at the limit
+                Collections.reverse(messages);
+            }
+            return messages;
         }
-        return messages;
     }
 }
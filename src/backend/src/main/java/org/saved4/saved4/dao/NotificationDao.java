@@ -9,6 +9,7 @@ import org.saved4.saved4.enums.Role;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Singleton
 public class NotificationDao {
@@ -67,48 +68,137 @@ public class NotificationDao {
     }
 
     /**
-     * Inserts a new notification into the database.
+     * Records in the outbox that a notification about an order is due. Runs on the caller's
+     * connection, so the intent is committed or rolled back together with the order change.
      *
-     * @param n the Notification object to insert
-     * @return true if the insertion was successful, false otherwise
+     * @param conn     the connection of the transaction writing the order
+     * @param type     the type of the notification
+     * @param receiver the username of the notification recipient
+     * @param orderId  the ID of the order the notification is about
      */
-    public boolean insertNotification(Role role, Notification n) {
-        String insertQuery = "INSERT INTO notifications (receiver, order_id, message_id, type, title, data, read, timestamp) " +
-                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+    public void enqueue(Connection conn, NotificationType type, String receiver, int orderId)
+            throws SQLException {
+        String sql = "INSERT INTO notification_outbox (type, receiver, order_id) VALUES (?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, type.name().toLowerCase());
+            ps.setString(2, receiver);
+            ps.setInt(3, orderId);
+            ps.executeUpdate();
+        }
+    }
 
-        int affectedRows = 0;
-        try (Connection conn = DBProvider.getConnection(role)) {
-            conn.setAutoCommit(false);
+    /**
+     * Moves the oldest entries of the outbox into notifications in one transaction. Entries
+     * claimed by a concurrent call are skipped. If the batch cannot be inserted as a whole, its
+     * entries are inserted one by one and those that still fail are dropped, so a single bad
+     * entry does not hold up the others.
+     *
+     * @param role     the role to use for database connection
+     * @param limit    the maximum number of entries to deliver
+     * @param describe fills in the title and data of a notification read from the outbox
+     * @return the inserted notifications with their generated IDs, oldest first
+     */
+    public List<Notification> deliverOutbox(Role role, int limit, Consumer<Notification> describe)
+            throws SQLException {
+        String claimSql = """
+                DELETE FROM notification_outbox
+                WHERE outbox_id IN (SELECT outbox_id FROM notification_outbox
+                                    ORDER BY outbox_id LIMIT ? FOR UPDATE SKIP LOCKED)
+                RETURNING outbox_id, type, receiver, order_id, occurred_at
+                """;
+        List<Notification> notifications = new ArrayList<>();
 
-            if (n.getReceiver() == null || n.getReceiver().isEmpty()) {
-                throw new SQLException("Notification receiver cannot be null or empty.");
+        try (Connection conn = DBProvider.getConnection(role)) {
+            try (PreparedStatement ps = conn.prepareStatement(claimSql)) {
+                ps.setInt(1, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Notification notification = new Notification();
+                        notification.setId(rs.getInt("outbox_id")); // replaced on insert
+                        notification.setType(NotificationType.valueOf(rs.getString("type").toUpperCase()));
+                        notification.setReceiver(rs.getString("receiver"));
+                        notification.setOrderId(rs.getInt("order_id"));
+                        notification.setRead(false);
+                        notification.setTimestamp(rs.getTimestamp("occurred_at"));
+                        describe.accept(notification);
+                        notifications.add(notification);
+                    }
+                }
             }
-            if (n.getData() == null || n.getData().isEmpty()) {
-                throw new SQLException("Notification data cannot be null or empty.");
+            if (notifications.isEmpty()) {
+                return notifications;
             }
+            // the claimed rows come back in no particular order, deliver the oldest first
+            notifications.sort((a, b) -> Integer.compare(a.getId(), b.getId()));
 
-            try (PreparedStatement ps = conn.prepareStatement(insertQuery)) {
-                ps.setString(1, n.getReceiver());
-                ps.setObject(2, n.getOrderId(), Types.INTEGER);
-                ps.setObject(3, n.getMessageId(), Types.INTEGER);
-                ps.setObject(4, n.getType().name().toLowerCase(), Types.OTHER);
-                ps.setString(5, n.getTitle());
-                ps.setString(6, n.getData());
-                ps.setBoolean(7, n.isRead());
-                ps.setTimestamp(8, n.getTimestamp() != null ? n.getTimestamp() : new Timestamp(System.currentTimeMillis()));
-
-                System.out.println("Inserting notification for: " + n.getReceiver() + ", order ID: " + n.getOrderId());
-                affectedRows = ps.executeUpdate();
-                System.out.println("Inserted notification rows: " + affectedRows);
+            Savepoint batch = conn.setSavepoint();
+            try {
+                insertNotifications(conn, notifications);
+            } catch (SQLException e) {
+                conn.rollback(batch);
+                System.err.println("Error delivering " + notifications.size() +
+                                           " notifications, retrying one by one: " + e.getMessage());
+                notifications = insertOneByOne(conn, notifications);
             }
-
             conn.commit();
-            System.out.println("Notification insert committed.");
-            return affectedRows > 0;
-        } catch (SQLException e) {
-            System.err.println("Error inserting notification: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+        }
+        return notifications;
+    }
+
+    private List<Notification> insertOneByOne(Connection conn, List<Notification> notifications)
+            throws SQLException {
+        List<Notification> delivered = new ArrayList<>();
+        for (Notification notification : notifications) {
+            Savepoint single = conn.setSavepoint();
+            try {
+                insertNotifications(conn, List.of(notification));
+                delivered.add(notification);
+            } catch (SQLException e) {
+                conn.rollback(single);
+                System.err.println("Dropping undeliverable " + notification.getType() +
+                                           " notification for " + notification.getReceiver() +
+                                           " about order " + notification.getOrderId() + ": " +
+                                           e.getMessage());
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Inserts the notifications with a single statement and sets their generated IDs.
+     */
+    private void insertNotifications(Connection conn, List<Notification> notifications)
+            throws SQLException {
+        // order_id is only kept while the order exists, deletion notices outlive it
+        StringBuilder insertSql = new StringBuilder("""
+                INSERT INTO notifications (receiver, order_id, message_id, type, title, data, read, timestamp)
+                VALUES
+                """);
+        for (int i = 0; i < notifications.size(); i++) {
+            insertSql.append(i == 0 ? "" : ", ")
+                    .append("(?, (SELECT order_id FROM orders WHERE order_id = ?), NULL, ?, ?, ?, false, ?)");
+        }
+        insertSql.append(" RETURNING notification_id");
+
+        try (PreparedStatement ps = conn.prepareStatement(insertSql.toString())) {
+            int index = 1;
+            for (Notification n : notifications) {
+                ps.setString(index++, n.getReceiver());
+                ps.setInt(index++, n.getOrderId());
+                ps.setObject(index++, n.getType().name().toLowerCase(), Types.OTHER);
+                ps.setString(index++, n.getTitle());
+                ps.setString(index++, n.getData());
+                ps.setTimestamp(index++, n.getTimestamp());
+            }
+            // a multi-row VALUES insert returns its rows in the order they were listed
+            try (ResultSet rs = ps.executeQuery()) {
+                for (Notification n : notifications) {
+                    if (!rs.next()) {
+                        throw new SQLException("Missing generated notification id");
+                    }
+                    n.setId(rs.getInt("notification_id"));
+                }
+            }
         }
     }
 
@@ -118,21 +208,26 @@ public class NotificationDao {
      * @param role           the role to use for database connection
      * @param notificationId the ID of the notification
      * @param read           the new read status
-     * @return true if the update was successful, false otherwise
+     * @return the receiver of the updated notification, or null if it was not found
      */
-    public boolean setReadStatus(Role role, int notificationId, boolean read) {
-        String query = "UPDATE notifications SET read = ? WHERE notification_id = ?";
+    public String setReadStatus(Role role, int notificationId, boolean read) {
+        String query = "UPDATE notifications SET read = ? WHERE notification_id = ? RETURNING receiver";
         try (Connection conn = DBProvider.getConnection(role);
              PreparedStatement ps = conn.prepareStatement(query)) {
             conn.setAutoCommit(false); // manually control the commit
             ps.setBoolean(1, read);
             ps.setInt(2, notificationId);
-            boolean success = ps.executeUpdate() > 0;
+            String receiver = null;
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    receiver = rs.getString("receiver");
+                }
+            }
             conn.commit(); // <- COMMIT HERE
-            return success;
+            return receiver;
         } catch (SQLException e) {
             System.err.println("Error updating read status: " + e.getMessage());
-            return false;
+            return null;
         }
     }
 
@@ -141,20 +236,52 @@ public class NotificationDao {
      *
      * @param role           the role to use for database connection
      * @param notificationId the ID of the notification to delete
-     * @return true if the deletion was successful, false otherwise
+     * @return the receiver of the deleted notification, or null if it was not found
      */
-    public boolean deleteNotification(Role role, int notificationId) {
-        String query = "DELETE FROM notifications WHERE notification_id = ?";
+    public String deleteNotification(Role role, int notificationId) {
+        String query = "DELETE FROM notifications WHERE notification_id = ? RETURNING receiver";
         try (Connection conn = DBProvider.getConnection(role);
              PreparedStatement ps = conn.prepareStatement(query)) {
             conn.setAutoCommit(false);
             ps.setInt(1, notificationId);
-            boolean success = ps.executeUpdate() > 0;
+            String receiver = null;
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    receiver = rs.getString("receiver");
+                }
+            }
             conn.commit();
-            return success;
+            return receiver;
         } catch (SQLException e) {
             System.err.println("Error deleting notification: " + e.getMessage());
-            return false;
+            return null;
+        }
+    }
+
+    /**
+     * Counts the unread notifications of a receiver, or of every receiver if none is given.
+     * Served by the partial index on unread notifications, so it stays cheap to poll.
+     *
+     * @param role     the role to use for database connection
+     * @param receiver the username of the notification recipient, or null for all
+     * @return the number of unread notifications, or 0 if they could not be counted
+     */
+    public int countUnread(Role role, String receiver) {
+        boolean filtered = receiver != null && !receiver.trim().isEmpty();
+        String sql = "SELECT COUNT(*) FROM notifications WHERE read IS NOT TRUE"
+                + (filtered ? " AND receiver = ?" : "");
+
+        try (Connection conn = DBProvider.getConnection(role, receiver);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (filtered) {
+                stmt.setString(1, receiver);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        } catch (SQLException e) {
+            System.err.println("Error counting unread notifications: " + e.getMessage());
+            return 0;
         }
     }
 
@@ -1,22 +1,47 @@
 package org.saved4.saved4.dao;
 
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
+import org.postgresql.geometric.PGpoint;
 import org.saved4.saved4.DBProvider;
 import org.saved4.saved4.dto.Coordinate;
 import org.saved4.saved4.dto.Order;
 import org.saved4.saved4.enums.FreightType;
+import org.saved4.saved4.enums.NotificationType;
 import org.saved4.saved4.enums.OperationType;
 import org.saved4.saved4.enums.OrderStatus;
 import org.saved4.saved4.enums.Role;
+import org.saved4.saved4.service.AnalyticsCache;
 
 
 @Singleton
 public class OrderDao {
+    private static final int FETCH_SIZE = 500;
+
+    // the orders moved by a transition statement, in the shape read by mapResultSetToOrder
+    private static final String TRANSITIONED_ORDERS = """
+            SELECT o.*,
+                   COALESCE(sc.location, sp.location) AS source_location,
+                   COALESCE(dc.location, dp.location) AS destination_location
+            FROM %s o
+            LEFT JOIN companies sc ON o.source = sc.username
+            LEFT JOIN port sp ON o.source = sp.username
+            LEFT JOIN companies dc ON o.destination = dc.username
+            LEFT JOIN port dp ON o.destination = dp.username
+            ORDER BY o.order_id
+            """;
+
+    @Inject
+    private AnalyticsCache analyticsCache;
+    @Inject
+    private NotificationDao notificationDao;
 
     /**
      * Retrieves a list of all orders from the database.
@@ -130,6 +155,27 @@ public class OrderDao {
      * @return The order object if found, or null if no matching order is found or a SQLException occurs.
      */
     public Order getOrderByIdDB(Role role, String dbRequester, int orderId, String orderFor) {
+        try (Connection connection = DBProvider.getConnection(role, dbRequester)) {
+            return getOrderByIdDB(connection, orderId, orderFor, false);
+        } catch (SQLException e) {
+            System.err.println("Error retrieving order: " + e.getMessage());
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves an order inside the given unit of work and locks its row until the unit of work
+     * ends, so the order cannot change between reading and updating it.
+     *
+     * @see #getOrderByIdDB(Role, String, int, String)
+     */
+    public Order getOrderByIdDB(UnitOfWork work, int orderId) throws SQLException {
+        return getOrderByIdDB(work.getConnection(), orderId, null, true);
+    }
+
+    private Order getOrderByIdDB(Connection connection, int orderId, String orderFor,
+                                 boolean forUpdate) throws SQLException {
         StringBuilder sqlBuilder = new StringBuilder("""
                                                              SELECT o.*,
                                                                     COALESCE(sc.location, sp.location) AS source_location,
@@ -148,11 +194,13 @@ public class OrderDao {
         if (orderFor != null) {
             sqlBuilder.append(" AND o.order_for = ?");
         }
+        if (forUpdate) {
+            sqlBuilder.append(" FOR UPDATE OF o");
+        }
 
         Order order = null;
-        try (Connection connection = DBProvider.getConnection(role, dbRequester);
-             PreparedStatement preparedStatement = connection.prepareStatement(
-                     sqlBuilder.toString())) {
+        try (PreparedStatement preparedStatement = connection.prepareStatement(
+                sqlBuilder.toString())) {
 
             int paramIndex = 1;
             preparedStatement.setInt(paramIndex++, orderId);
@@ -188,7 +236,7 @@ public class OrderDao {
                     order.setSource(resultSet.getString("source"));
                     order.setDestination(resultSet.getString("destination"));
                     order.setShared(resultSet.getBoolean("is_shared"));
-                    order.setShared(resultSet.getBoolean("preferred_shared"));
+                    order.setPreferredShared(resultSet.getBoolean("preferred_shared"));
                     order.setTwStart(resultSet.getTimestamp("tw_start"));
                     order.setTwEnd(resultSet.getTimestamp("tw_end"));
 
@@ -229,9 +277,6 @@ public class OrderDao {
                     }
                 }
             }
-        } catch (SQLException e) {
-            System.err.println("Error retrieving order: " + e.getMessage());
-            e.printStackTrace();
         }
 
         return order;
@@ -243,22 +288,27 @@ public class OrderDao {
      * The order's `order_id` will be set by the database and returned in the order object.
      * The `is_shared` field is hardcoded to `false` upon insertion, since it's a default value.
      *
-     * @param order The order object containing the data to be inserted.
+     * @param order  The order object containing the data to be inserted.
+     * @param notify The notification to queue for the order's recipient in the same
+     *               transaction, or null for none.
      * @return The order object with its newly generated order_id, null if the insertion fails.
      */
-    public Order insertOrderDB(Role role, String dbRequester, Order order) {
+    public Order insertOrderDB(Role role, String dbRequester, Order order,
+                               NotificationType notify) {
         String sql =
                 "INSERT INTO orders (container_id, vehicle_id, requester, route_id, made_at, source, destination, " +
                         "preferred_shared, tw_start, tw_end, eta, status, operation_type, freight_value, freight_type, freight_weight, order_for, is_shared) " +
-                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, false) RETURNING order_id";
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, false) RETURNING order_id, order_for";
 
         try (Connection conn = DBProvider.getConnection(role, dbRequester);
              PreparedStatement stmt = conn.prepareStatement(sql)) {
-            conn.setAutoCommit(true);
             setOrderParameters(stmt, order);
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
                     order.setOrderId(rs.getInt("order_id"));
+                    enqueueNotification(conn, notify, rs.getString("order_for"), order.getOrderId());
+                    conn.commit();
+                    analyticsCache.invalidate(AnalyticsCache.Source.ORDERS);
                     System.out.println("added");
                     return order;
                 }
@@ -279,6 +329,40 @@ public class OrderDao {
      * no order is found with the given ID or a SQLException occurs.
      */
     public Order updateOrderDB(Role role, String dbRequester, int id, Order order) {
+        return updateOrderDB(role, dbRequester, id, order, null);
+    }
+
+    /**
+     * Updates an existing order in the database and queues a notification for its recipient in
+     * the same transaction.
+     *
+     * @param notify The notification to queue, or null for none.
+     * @see #updateOrderDB(Role, String, int, Order)
+     */
+    public Order updateOrderDB(Role role, String dbRequester, int id, Order order,
+                               NotificationType notify) {
+        try (UnitOfWork work = new UnitOfWork(role, dbRequester)) {
+            Order savedOrder = updateOrderDB(work, id, order, notify);
+            if (savedOrder != null) {
+                work.commit();
+            }
+            return savedOrder;
+        } catch (SQLException e) {
+            System.err.println("Error updating order " + id + ": " + e.getMessage());
+        }
+
+        return null;
+    }
+
+    /**
+     * Updates an existing order inside the given unit of work, which commits it together with
+     * the other writes of the same transition.
+     *
+     * @return The updated order object, or null if no order is found with the given ID.
+     * @see #updateOrderDB(Role, String, int, Order, NotificationType)
+     */
+    public Order updateOrderDB(UnitOfWork work, int id, Order order, NotificationType notify)
+            throws SQLException {
         StringBuilder sql = new StringBuilder("UPDATE orders SET ");
         List<Object> params = new ArrayList<>();
 
@@ -378,13 +462,11 @@ public class OrderDao {
         sql.setLength(sql.length() - 2);
 
         // Add WHERE clause
-        sql.append(" WHERE order_id = ?");
+        sql.append(" WHERE order_id = ? RETURNING order_for");
         params.add(id);
 
-        try (Connection conn = DBProvider.getConnection(role, dbRequester);
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
-
-            conn.setAutoCommit(true);
+        Connection conn = work.getConnection();
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
 
             // Set parameters one by one
             for (int i = 0; i < params.size(); i++) {
@@ -402,44 +484,148 @@ public class OrderDao {
                 }
             }
 
-            int rows = stmt.executeUpdate();
-            if (rows > 0) {
-                order.setOrderId(id);
-                System.out.println("Success updating order " + id);
-                return order;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                enqueueNotification(conn, notify, rs.getString("order_for"), id);
             }
+        }
+        order.setOrderId(id);
+        work.afterCommit(() -> analyticsCache.invalidate(AnalyticsCache.Source.ORDERS));
+        System.out.println("Success updating order " + id);
+        return order;
+    }
 
-        } catch (SQLException e) {
-            System.err.println("Error updating order " + id + ": " + e.getMessage());
+
+    /**
+     * Starts every scheduled order whose departure time has passed, and puts its vehicle and
+     * container in use, in a single statement inside the given unit of work.
+     *
+     * @param dueBy Orders departing at or before this moment are started.
+     * @return The started orders as they are after the update.
+     */
+    public List<Order> startDueOrders(UnitOfWork work, Timestamp dueBy) throws SQLException {
+        String sql = """
+                WITH started AS (
+                    UPDATE orders SET status = 'undergoing'::order_status
+                    WHERE status = 'scheduled'::order_status AND departure_time <= ?
+                    RETURNING *),
+                started_vehicles AS (
+                    UPDATE vehicles SET status = 'in_use'::vehicle_status
+                    WHERE vehicle_id IN (SELECT vehicle_id FROM started)),
+                started_containers AS (
+                    UPDATE containers SET container_status = 'in_use'::container_status
+                    WHERE is_active = TRUE AND container_id IN (SELECT container_id FROM started))
+                """ + TRANSITIONED_ORDERS.formatted("started");
+
+        try (PreparedStatement stmt = work.getConnection().prepareStatement(sql)) {
+            stmt.setTimestamp(1, dueBy);
+            return transitionDueOrders(work, stmt);
         }
+    }
 
-        return null;
+    /**
+     * Completes every undergoing order whose ETA has passed in a single statement inside the
+     * given unit of work. Vehicles and containers are released unless another undergoing order
+     * still uses them, and each vehicle is moved to the destination of its last finished order.
+     *
+     * @param dueBy           Orders arriving at or before this moment are completed.
+     * @param defaultLocation Where vehicles are moved when the destination is not a company.
+     * @return The completed orders as they are after the update.
+     */
+    public List<Order> finishDueOrders(UnitOfWork work, Timestamp dueBy, PGpoint defaultLocation)
+            throws SQLException {
+        String sql = """
+                WITH finished AS (
+                    UPDATE orders SET status = 'completed'::order_status
+                    WHERE status = 'undergoing'::order_status AND eta <= ?
+                    RETURNING *),
+                released_vehicles AS (
+                    UPDATE vehicles v SET status = 'available'::vehicle_status,
+                        position = COALESCE((SELECT c.location FROM companies c
+                                             JOIN users u ON u.username = c.username
+                                             WHERE c.username = last.destination
+                                             AND u.is_active = TRUE), CAST(? AS point))
+                    FROM (SELECT DISTINCT ON (vehicle_id) vehicle_id, destination FROM finished
+                          WHERE vehicle_id IS NOT NULL ORDER BY vehicle_id, eta DESC) last
+                    WHERE v.vehicle_id = last.vehicle_id
+                    AND NOT EXISTS (SELECT 1 FROM orders o
+                                    WHERE o.vehicle_id = v.vehicle_id
+                                    AND o.status = 'undergoing'::order_status
+                                    AND o.order_id NOT IN (SELECT order_id FROM finished))),
+                released_containers AS (
+                    UPDATE containers c SET container_status = 'available'::container_status
+                    WHERE c.is_active = TRUE AND c.container_id IN (SELECT container_id FROM finished)
+                    AND NOT EXISTS (SELECT 1 FROM orders o
+                                    WHERE o.container_id = c.container_id
+                                    AND o.status = 'undergoing'::order_status
+                                    AND o.order_id NOT IN (SELECT order_id FROM finished)))
+                """ + TRANSITIONED_ORDERS.formatted("finished");
+
+        try (PreparedStatement stmt = work.getConnection().prepareStatement(sql)) {
+            stmt.setTimestamp(1, dueBy);
+            stmt.setString(2, defaultLocation.x + "," + defaultLocation.y);
+            return transitionDueOrders(work, stmt);
+        }
     }
 
+    private List<Order> transitionDueOrders(UnitOfWork work, PreparedStatement stmt)
+            throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                orders.add(mapResultSetToOrder(rs));
+            }
+        }
+        if (!orders.isEmpty()) {
+            work.afterCommit(() -> {
+                analyticsCache.invalidate(AnalyticsCache.Source.ORDERS);
+                analyticsCache.invalidate(AnalyticsCache.Source.VEHICLES);
+            });
+        }
+        return orders;
+    }
 
     /**
      * Deletes an order from the database by its unique identifier.
      *
-     * @param id The unique integer ID of the order to be removed.
+     * @param id     The unique integer ID of the order to be removed.
+     * @param notify The notification to queue for the order's recipient in the same
+     *               transaction, or null for none.
      * @return true if the order was successfully deleted, false otherwise.
      */
-    public boolean removeOrderDB(Role role, String dbRequester, int id) {
-        String sql = "DELETE FROM orders WHERE order_id = ?";
+    public boolean removeOrderDB(Role role, String dbRequester, int id, NotificationType notify) {
+        String sql = "DELETE FROM orders WHERE order_id = ? RETURNING order_for";
         try (Connection conn = DBProvider.getConnection(role, dbRequester);
              PreparedStatement stmt = conn.prepareStatement(sql)) {
             stmt.setInt(1, id);
-            conn.setAutoCommit(true);
 
-            int rows = stmt.executeUpdate();
-            if (rows > 0) {
-                System.out.println("Success REMOVE with id: " + id);
-                return true;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+                enqueueNotification(conn, notify, rs.getString("order_for"), id);
             }
+            conn.commit();
+            analyticsCache.invalidate(AnalyticsCache.Source.ORDERS);
+            System.out.println("Success REMOVE with id: " + id);
+            return true;
         } catch (SQLException e) {
             System.err.println("Error deleting order " + id + ": " + e.getMessage());
             return false;
         }
-        return false;
+    }
+
+    /**
+     * Queues the notification in the order's transaction. Orders without a recipient have
+     * nobody to notify.
+     */
+    private void enqueueNotification(Connection conn, NotificationType notify, String receiver,
+                                     int orderId) throws SQLException {
+        if (notify != null && receiver != null) {
+            notificationDao.enqueue(conn, notify, receiver, orderId);
+        }
     }
 
     /**
@@ -450,6 +636,82 @@ public class OrderDao {
                                          String endDate, String source, String destination,
                                          List<String> status, String operationType,
                                          String order_for, Boolean is_shared, Integer routeId) {
+        return getFilteredOrders(role, dbRequester, containerId, vehicleId, requester, startDate,
+                                 endDate, source, destination, status, operationType, order_for,
+                                 is_shared, routeId, null, null);
+    }
+
+    /**
+     * Retrieve one page of filtered orders, newest first.
+     *
+     * @param afterId only orders with a smaller id are returned, null to start at the newest
+     * @param limit   the maximum number of orders to return, null for all of them
+     */
+    public List<Order> getFilteredOrders(Role role, String dbRequester, Integer containerId,
+                                         Integer vehicleId, String requester, String startDate,
+                                         String endDate, String source, String destination,
+                                         List<String> status, String operationType,
+                                         String order_for, Boolean is_shared, Integer routeId,
+                                         Integer afterId, Integer limit) {
+        List<Order> orders = new ArrayList<>();
+        try {
+            streamFilteredOrders(role, dbRequester, containerId, vehicleId, requester, startDate,
+                                 endDate, source, destination, status, operationType, order_for,
+                                 is_shared, routeId, null, null, afterId, limit, orders::add);
+        } catch (SQLException | IOException e) {
+            System.err.println("Error retrieving filtered orders: " + e.getMessage());
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+        return orders;
+    }
+
+    /**
+     * Hands the filtered orders to {@code handler} one by one as they are read from the database,
+     * newest first, without collecting them. The rows are fetched in batches of
+     * {@link #FETCH_SIZE}, so memory use does not depend on the number of matching orders.
+     *
+     * @param twFrom only orders whose time window ends at or after it, null for no lower bound
+     * @param twTo   only orders whose time window starts before it, null for no upper bound
+     */
+    public void streamFilteredOrders(Role role, String dbRequester, Integer containerId,
+                                     Integer vehicleId, String requester, String startDate,
+                                     String endDate, String source, String destination,
+                                     List<String> status, String operationType, String order_for,
+                                     Boolean is_shared, Integer routeId, Timestamp twFrom,
+                                     Timestamp twTo, Integer afterId, Integer limit,
+                                     RowHandler<Order> handler)
+            throws SQLException, IOException {
+        try (Connection conn = DBProvider.getConnection(role, dbRequester)) {
+            streamFilteredOrders(conn, containerId, vehicleId, requester, startDate, endDate,
+                                 source, destination, status, operationType, order_for,
+                                 is_shared, routeId, twFrom, twTo, afterId, limit, handler);
+        }
+    }
+
+    /**
+     * Retrieves the orders of a route inside the given unit of work, newest first.
+     */
+    public List<Order> getOrdersByRoute(UnitOfWork work, int routeId) throws SQLException {
+        List<Order> orders = new ArrayList<>();
+        try {
+            streamFilteredOrders(work.getConnection(), null, null, null, null, null, null, null,
+                                 null, null, null, null, routeId, null, null, null, null,
+                                 orders::add);
+        } catch (IOException e) {
+            // collecting into a list does not do any I/O
+            throw new UncheckedIOException(e);
+        }
+        return orders;
+    }
+
+    private void streamFilteredOrders(Connection conn, Integer containerId, Integer vehicleId,
+                                      String requester, String startDate, String endDate,
+                                      String source, String destination, List<String> status,
+                                      String operationType, String order_for, Boolean is_shared,
+                                      Integer routeId, Timestamp twFrom, Timestamp twTo,
+                                      Integer afterId, Integer limit, RowHandler<Order> handler)
+            throws SQLException, IOException {
         StringBuilder sql = new StringBuilder("""
                                                       SELECT o.*,
                                                              COALESCE(sc.location, sp.location) AS source_location,
@@ -520,37 +782,49 @@ public class OrderDao {
             params.add(routeId);
         }
 
+        if (twFrom != null) {
+            conditions.add("o.tw_end >= ?");
+            params.add(twFrom);
+        }
+        if (twTo != null) {
+            conditions.add("o.tw_start < ?");
+            params.add(twTo);
+        }
+
         if (order_for != null) {
             conditions.add("o.order_for = ?");
             params.add(order_for);
         }
 
+        if (afterId != null) {
+            conditions.add("o.order_id < ?");
+            params.add(afterId);
+        }
+
         if (!conditions.isEmpty()) {
             sql.append(" WHERE ");
             sql.append(String.join(" AND ", conditions));
         }
 
-        sql.append(" ORDER BY order_id DESC");
+        sql.append(" ORDER BY o.order_id DESC");
 
-        try (Connection conn = DBProvider.getConnection(role, dbRequester);
-             PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+        if (limit != null) {
+            sql.append(" LIMIT ?");
+            params.add(limit);
+        }
+
+        try (PreparedStatement stmt = conn.prepareStatement(sql.toString())) {
+            stmt.setFetchSize(FETCH_SIZE);
 
             for (int i = 0; i < params.size(); i++) {
                 stmt.setObject(i + 1, params.get(i));
             }
 
             try (ResultSet rs = stmt.executeQuery()) {
-                List<Order> orders = new ArrayList<>();
                 while (rs.next()) {
-                    orders.add(mapResultSetToOrder(rs));
+                    handler.handle(mapResultSetToOrder(rs));
                 }
-                return orders;
             }
-
-        } catch (SQLException e) {
-            System.err.println("Error retrieving filtered orders: " + e.getMessage());
-            e.printStackTrace();
-            return new ArrayList<>();
         }
     }
 
@@ -29,11 +29,12 @@ public class RegisterDao {
 
     public boolean checkIfExists(Role role, String email) throws SQLException {
         String stmt = "SELECT 1 FROM users where email = ?";
-        Connection conn = DBProvider.getConnection(role);
-        PreparedStatement preparedStmt = conn.prepareStatement(stmt);
-        preparedStmt.setString(1, email);
-        ResultSet resultSet = preparedStmt.executeQuery();
+        try (Connection conn = DBProvider.getConnection(role)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(stmt);
+            preparedStmt.setString(1, email);
+            ResultSet resultSet = preparedStmt.executeQuery();
 
-        return resultSet.next();
+            return resultSet.next();
+        }
     }
 }
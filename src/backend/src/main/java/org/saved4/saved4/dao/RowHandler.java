@@ -0,0 +1,13 @@
+package org.saved4.saved4.dao;
+
+import java.io.IOException;
+
+/**
+ * Receives the rows of a streamed query one at a time, while the result set is still open.
+ *
+ * @param <T> the type each row is mapped to
+ */
+@FunctionalInterface
+public interface RowHandler<T> {
+    void handle(T row) throws IOException;
+}
@@ -0,0 +1,76 @@
+package org.saved4.saved4.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.saved4.saved4.DBProvider;
+import org.saved4.saved4.enums.Role;
+
+/**
+ * One database transaction shared by several DAO writes, so related changes (an order together
+ * with its vehicle and container) are applied on a single connection and committed at once.
+ * <p>
+ * DAO methods that take a unit of work only run their statements on its connection and never
+ * commit. Work that must only happen once the changes are visible, such as invalidating caches,
+ * is registered with {@link #afterCommit(Runnable)}. Closing the unit of work without calling
+ * {@link #commit()} rolls everything back.
+ * <pre>{@code
+ * try (UnitOfWork work = new UnitOfWork(role, dbRequester)) {
+ *     orderDao.updateOrderDB(work, id, order, null);
+ *     vehicleDAO.updateVehicleStatus(work, vehicleId, VehicleStatus.in_use, null);
+ *     work.commit();
+ * }
+ * }</pre>
+ */
+public class UnitOfWork implements AutoCloseable {
+    private final Connection connection;
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private boolean committed;
+
+    public UnitOfWork(Role role, String dbRequester) throws SQLException {
+        this.connection = DBProvider.getConnection(role, dbRequester);
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Runs the action after a successful commit. Actions are dropped on rollback.
+     */
+    public void afterCommit(Runnable action) {
+        afterCommit.add(action);
+    }
+
+    /**
+     * Commits all statements of this unit of work, then runs the registered after-commit
+     * actions in the order they were added. The changes are already committed at that point, so
+     * an action that fails is logged and the remaining ones still run.
+     */
+    public void commit() throws SQLException {
+        if (committed) {
+            throw new IllegalStateException("Unit of work already committed");
+        }
+        connection.commit();
+        committed = true;
+        for (Runnable action : afterCommit) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                System.err.println("After-commit action failed: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        afterCommit.clear();
+    }
+
+    /**
+     * Returns the connection to the pool, which rolls back anything not committed.
+     */
+    @Override
+    public void close() throws SQLException {
+        afterCommit.clear();
+        connection.close();
+    }
+}
@@ -1,5 +1,6 @@
 package org.saved4.saved4.dao;
 
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -9,6 +10,7 @@ import java.util.ArrayList;
 import java.util.List;
 import org.postgresql.geometric.PGpoint;
 import org.saved4.saved4.DBProvider;
+import org.saved4.saved4.auth.PrincipalCache;
 import org.saved4.saved4.dto.Admin;
 import org.saved4.saved4.dto.Company;
 import org.saved4.saved4.dto.User;
@@ -17,22 +19,25 @@ import org.saved4.saved4.enums.UserType;
 
 @Singleton
 public class UserDao {
+    @Inject
+    private PrincipalCache principalCache;
 
     public String create(Role role, User newUser) throws SQLException {
         String userInsertStmt =
                 "INSERT INTO users (username, password, email, type) VALUES (?, ?, ?, ?::user_type);";
-        Connection conn = DBProvider.getConnection(role);
-        PreparedStatement preparedStmt = conn.prepareStatement(userInsertStmt);
+        try (Connection conn = DBProvider.getConnection(role)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(userInsertStmt);
 
-        preparedStmt.setString(1, newUser.getUsername());
-        preparedStmt.setString(2, newUser.getPassword());
-        preparedStmt.setString(3, newUser.getEmail());
-        preparedStmt.setString(4, newUser.getUserType().toString().toLowerCase());
+            preparedStmt.setString(1, newUser.getUsername());
+            preparedStmt.setString(2, newUser.getPassword());
+            preparedStmt.setString(3, newUser.getEmail());
+            preparedStmt.setString(4, newUser.getUserType().toString().toLowerCase());
 
-        preparedStmt.executeUpdate();
-        conn.commit();
+            preparedStmt.executeUpdate();
+            conn.commit();
 
-        return newUser.getUsername();
+            return newUser.getUsername();
+        }
     }
 
     public boolean update(Role role, String dbRequester, String username, User user)
@@ -71,14 +76,16 @@ public class UserDao {
         updateQuery.append(" WHERE username = ? AND is_active = TRUE; ");
         params.add(username);
 
-        Connection conn = DBProvider.getConnection(role, dbRequester);
-        PreparedStatement preparedStmt = conn.prepareStatement(updateQuery.toString());
-        for (int i = 0; i < params.size(); i++) {
-            preparedStmt.setObject(i + 1, params.get(i));
+        try (Connection conn = DBProvider.getConnection(role, dbRequester)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(updateQuery.toString());
+            for (int i = 0; i < params.size(); i++) {
+                preparedStmt.setObject(i + 1, params.get(i));
+            }
+            int affectedRows = preparedStmt.executeUpdate();
+            conn.commit();
+            principalCache.invalidate(username);
+            return affectedRows > 0;
         }
-        int affectedRows = preparedStmt.executeUpdate();
-        conn.commit();
-        return affectedRows > 0;
     }
 
     public User getUserByUsername(Role role, String username) throws SQLException {
@@ -90,16 +97,17 @@ public class UserDao {
                 "LEFT JOIN admins a ON u.username = a.username " +
                 "LEFT JOIN port p ON u.username = p.username " +
                 "WHERE u.is_active = TRUE AND u.username = ? AND u.type != 'port'::user_type";
-        Connection conn = DBProvider.getConnection(role);
-        PreparedStatement preparedStmt = conn.prepareStatement(userQuery);
+        try (Connection conn = DBProvider.getConnection(role)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(userQuery);
 
-        preparedStmt.setString(1, username);
-        ResultSet resultSet = preparedStmt.executeQuery();
-        if (!resultSet.next()) {
-            return null;
-        }
+            preparedStmt.setString(1, username);
+            ResultSet resultSet = preparedStmt.executeQuery();
+            if (!resultSet.next()) {
+                return null;
+            }
 
-        return mapResultSetToUser(resultSet);
+            return mapResultSetToUser(resultSet);
+        }
     }
 
     public List<User> getAllUsers(Role role, String type) throws SQLException {
@@ -123,21 +131,22 @@ public class UserDao {
 
         queryBuilder.append(" ORDER BY u.created_at DESC");
 
-        Connection conn = DBProvider.getConnection(role);
-        PreparedStatement preparedStmt = conn.prepareStatement(queryBuilder.toString());
+        try (Connection conn = DBProvider.getConnection(role)) {
+            PreparedStatement preparedStmt = conn.prepareStatement(queryBuilder.toString());
 
-        for (int i = 0; i < params.size(); i++) {
-            preparedStmt.setObject(i + 1, params.get(i));
-        }
+            for (int i = 0; i < params.size(); i++) {
+                preparedStmt.setObject(i + 1, params.get(i));
+            }
 
-        ResultSet resultSet = preparedStmt.executeQuery();
-        List<User> users = new ArrayList<>();
+            ResultSet resultSet = preparedStmt.executeQuery();
+            List<User> users = new ArrayList<>();
 
-        while (resultSet.next()) {
-            users.add(mapResultSetToUser(resultSet));
-        }
+            while (resultSet.next()) {
+                users.add(mapResultSetToUser(resultSet));
+            }
 
-        return users;
+            return users;
+        }
     }
 
     /**
@@ -1,6 +1,8 @@
 package org.saved4.saved4.dao;
 
+import jakarta.inject.Inject;
 import jakarta.inject.Singleton;
+import java.io.IOException;
 import java.io.Serializable;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -12,11 +14,15 @@ import org.postgresql.geometric.PGpoint;
 import org.saved4.saved4.DBProvider;
 import org.saved4.saved4.dto.Vehicle;
 import org.saved4.saved4.enums.Role;
+import org.saved4.saved4.service.AnalyticsCache;
 import org.saved4.saved4.enums.VehicleStatus;
 
 @Singleton
 public class VehicleDAO implements Serializable {
+    private static final int FETCH_SIZE = 500;
 
+    @Inject
+    private AnalyticsCache analyticsCache;
 
     /**
      * Retrieves a list of all vehicles from the database.
@@ -26,36 +32,46 @@ public class VehicleDAO implements Serializable {
      */
     public List<Vehicle> getAllVehiclesDB(Role role) {
         List<Vehicle> vehicles = new ArrayList<>();
-        String sql = "SELECT * FROM vehicles";
-
-        try (Connection connection = DBProvider.getConnection(role);
-             PreparedStatement preparedStatement = connection.prepareStatement(sql);
-             ResultSet resultSet = preparedStatement.executeQuery()) {
+        try {
+            streamAllVehicles(role, vehicles::add);
+        } catch (SQLException | IOException e) {
+            System.err.println("Error retrieving vehicles: " + e.getMessage());
+        }
+        return vehicles;
+    }
 
-            while (resultSet.next()) {
-                Vehicle vehicle = new Vehicle();
-                vehicle.setVehicleId(resultSet.getInt("vehicle_id"));
+    /**
+     * Hands all vehicles to {@code handler} one by one as they are read from the database,
+     * ordered by id, fetching {@link #FETCH_SIZE} rows at a time.
+     */
+    public void streamAllVehicles(Role role, RowHandler<Vehicle> handler)
+            throws SQLException, IOException {
+        String sql = "SELECT * FROM vehicles ORDER BY vehicle_id";
 
-                String position = resultSet.getString("position");
-                position = position.replace("(", "").replace(")", "").trim(); // remove parens
-                String[] coords = position.split(",");
-                double x = Double.parseDouble(coords[0].trim());
-                double y = Double.parseDouble(coords[1].trim());
-                vehicle.setPosition(new PGpoint(x, y));
+        try (Connection connection = DBProvider.getConnection(role);
+             PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+            preparedStatement.setFetchSize(FETCH_SIZE);
 
-                vehicle.setBattery_level(resultSet.getFloat("battery_level"));
-                vehicle.setStatus(VehicleStatus.valueOf(resultSet.getString("status")));
-                vehicle.setDistance(resultSet.getFloat("distance"));
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    Vehicle vehicle = new Vehicle();
+                    vehicle.setVehicleId(resultSet.getInt("vehicle_id"));
 
-                vehicles.add(vehicle);
+                    String position = resultSet.getString("position");
+                    position = position.replace("(", "").replace(")", "").trim(); // remove parens
+                    String[] coords = position.split(",");
+                    double x = Double.parseDouble(coords[0].trim());
+                    double y = Double.parseDouble(coords[1].trim());
+                    vehicle.setPosition(new PGpoint(x, y));
 
+                    vehicle.setBattery_level(resultSet.getFloat("battery_level"));
+                    vehicle.setStatus(VehicleStatus.valueOf(resultSet.getString("status")));
+                    vehicle.setDistance(resultSet.getFloat("distance"));
 
+                    handler.handle(vehicle);
+                }
             }
-
-        } catch (SQLException e) {
-            System.err.println("Error retrieving vehicles: " + e.getMessage());
         }
-        return vehicles;
     }
 
     /**
@@ -119,6 +135,7 @@ public class VehicleDAO implements Serializable {
             int result = preparedStatement.executeUpdate();
 
             if (result > 0) {
+                analyticsCache.invalidate(AnalyticsCache.Source.VEHICLES);
                 System.out.println("success");
                 return true;
             } else {
@@ -237,6 +254,7 @@ public class VehicleDAO implements Serializable {
             int result = preparedStatement.executeUpdate();
             System.out.println(result);
             if (result > 0) {
+                analyticsCache.invalidate(AnalyticsCache.Source.VEHICLES);
                 System.out.println("success");
                 vehicle.setVehicleId(id);
                 return vehicle;
@@ -250,6 +268,32 @@ public class VehicleDAO implements Serializable {
         return null;
     }
 
+    /**
+     * Sets the status of a vehicle inside the given unit of work, without reading it first.
+     *
+     * @param position The new position of the vehicle, or null to keep the current one.
+     * @return true if the vehicle exists, false otherwise.
+     */
+    public boolean updateVehicleStatus(UnitOfWork work, int id, VehicleStatus status,
+                                       PGpoint position) throws SQLException {
+        String sql =
+                "UPDATE vehicles SET status = ?::vehicle_status, position = COALESCE(CAST(? AS point), position) WHERE vehicle_id = ?";
+
+        try (PreparedStatement preparedStatement = work.getConnection().prepareStatement(sql)) {
+            preparedStatement.setString(1, status.name());
+            preparedStatement.setString(2,
+                                        position == null ? null : position.x + "," + position.y);
+            preparedStatement.setInt(3, id);
+
+            if (preparedStatement.executeUpdate() == 0) {
+                System.out.println("No vehicle found with id: " + id);
+                return false;
+            }
+        }
+        work.afterCommit(() -> analyticsCache.invalidate(AnalyticsCache.Source.VEHICLES));
+        return true;
+    }
+
     /**
      * Inserts a new vehicle record into the database.
      *
@@ -282,6 +326,7 @@ public class VehicleDAO implements Serializable {
             int result = preparedStatement.executeUpdate();
 
             if (result > 0) {
+                analyticsCache.invalidate(AnalyticsCache.Source.VEHICLES);
                 System.out.println("Vehicle Added");
                 return vehicle;
             } else {
@@ -15,7 +15,7 @@ public class ChangeLog {
     private List<String> typeChanged;
     private Map<String, Object> dataInitial;
     private Map<String, Object> dataChanged;
-    private Map<String, String> isRead;
+    private boolean read;
 
     public ChangeLog() {}
 
@@ -29,7 +29,6 @@ public class ChangeLog {
         this.typeChanged = new ArrayList<>();
         this.dataInitial = new HashMap<>();
         this.dataChanged = new HashMap<>();
-        this.isRead = new HashMap<>();
     }
 
     // Getters and setters
@@ -78,13 +77,11 @@ public class ChangeLog {
     public Map<String, Object> getDataChanged() { return dataChanged; }
     public void setDataChanged(Map<String, Object> dataChanged) { this.dataChanged = dataChanged; }
 
-    public Map<String, String> getIsRead() {
-        return isRead;
-    }
-
-    public void setIsRead(Map<String, String> isRead) {
-        this.isRead = (isRead != null) ? isRead : new HashMap<>();
-    }
+    /**
+     * Whether the user the log was loaded for has read it.
+     */
+    public boolean isRead() { return read; }
+    public void setRead(boolean read) { this.read = read; }
 
     @Override
     public String toString() {
@@ -98,7 +95,7 @@ public class ChangeLog {
                 ", dataInitial='" + dataInitial + '\'' +
                 ", dataChanged='" + dataChanged + '\'' +
                 ", changeStatus='" + changeStatus + '\'' +
-                ", isRead=" + isRead +
+                ", read=" + read +
                 '}';
     }
 }
@@ -0,0 +1,10 @@
+package org.saved4.saved4.exceptions;
+
+import jakarta.ws.rs.WebApplicationException;
+
+public class TooManyRequestsException extends WebApplicationException {
+
+    public TooManyRequestsException() {
+        super("Too many requests, try again later", 429);
+    }
+}
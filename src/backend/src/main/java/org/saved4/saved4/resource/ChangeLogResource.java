@@ -8,6 +8,7 @@ import jakarta.ws.rs.core.Response;
 import org.saved4.saved4.dto.ChangeLog;
 import org.saved4.saved4.service.ChangeLogService;
 
+import java.sql.Timestamp;
 import java.util.List;
 import java.util.Map;
 
@@ -18,6 +19,7 @@ import java.util.Map;
 @Path("/changelog")
 @RequestScoped
 public class ChangeLogResource {
+    private static final int MAX_PAGE_SIZE = 1000;
 
     @Inject
     private ChangeLogService changeLogService;
@@ -30,36 +32,72 @@ public class ChangeLogResource {
     }
 
     /**
-     * Retrieves change logs, with optional filtering by order owner.
+     * Retrieves one page of change logs, newest first, with optional filtering.
      * If the 'orderOwner' query parameter is provided, it filters logs for that specific owner.
-     * If 'orderOwner' is null or empty, it retrieves all change logs (intended for admin users).
+     * If 'orderOwner' is null or empty, it retrieves the change logs of all owners (intended for admin users).
      *
-     * @param orderOwner An optional query parameter specifying the ID of the order owner (e.g., company name or user ID)
-     *                   to filter the change logs. If this parameter is null or empty, all logs are returned.
-     * @return A {@link List} of {@link ChangeLog} objects.
-     * @throws WebApplicationException If an error occurs during retrieval (e.g., database error).
+     * @param orderOwner  An optional query parameter specifying the ID of the order owner (e.g., company name or user ID)
+     *                    to filter the change logs.
+     * @param orderId     An optional order ID to only list the change logs of that order.
+     * @param since       An optional timestamp (yyyy-mm-dd hh:mm:ss) to only list logs modified at or after it.
+     * @param afterId     The {@code nextAfterId} of the previous page, or absent for the first page.
+     * @param limit       The page size, 100 by default.
+     * @param includeData Whether to include the initial and changed values, false by default.
+     * @return A JSON object with the {@link ChangeLog} page and the cursor of the next page, streamed from the database.
+     * @throws BadRequestException If the limit or timestamp is invalid.
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public List<ChangeLog> listChangeLogs(@QueryParam("orderOwner") String orderOwner) {
-        try {
-            List<ChangeLog> logs;
-            if (orderOwner != null && !orderOwner.trim().isEmpty()) {
-                // If orderOwner is provided, fetch logs for that specific owner
-                logs = changeLogService.getChangeLogsByOrderOwner(orderOwner.trim());
-                System.out.println("Resource: Retrieved change logs for order owner " + orderOwner + ". Count: " + logs.size());
-            } else {
-                // If orderOwner is null or empty (admin view), fetch ALL logs
-                logs = changeLogService.getAllChangeLogs();
-                System.out.println("Resource: Retrieved all change logs (admin view). Count: " + logs.size());
+    public Response listChangeLogs(@QueryParam("orderOwner") String orderOwner,
+                                   @QueryParam("order_id") Integer orderId,
+                                   @QueryParam("since") String since,
+                                   @QueryParam("after_id") Integer afterId,
+                                   @QueryParam("limit") @DefaultValue("100") int limit,
+                                   @QueryParam("include_data") @DefaultValue("false") boolean includeData) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        Timestamp sinceTime = null;
+        if (since != null && !since.trim().isEmpty()) {
+            try {
+                sinceTime = Timestamp.valueOf(since.trim());
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("since must be formatted as yyyy-mm-dd hh:mm:ss");
             }
-            return logs;
-        } catch (Exception e) {
-            System.err.println("Resource Error retrieving change logs: " + e.getMessage());
-            e.printStackTrace();
-            throw new WebApplicationException("Failed to retrieve change logs: " + e.getMessage(),
-                    Response.Status.INTERNAL_SERVER_ERROR);
         }
+        String owner = orderOwner != null && !orderOwner.trim().isEmpty() ? orderOwner.trim() : null;
+        return Response.ok(changeLogService.streamChangeLogs(owner, orderId, sinceTime, afterId,
+                                                             limit, includeData)).build();
+    }
+
+    /**
+     * Retrieves the number of change logs the current user has not read yet.
+     *
+     * @param orderOwner An optional query parameter to only count the logs of this order owner.
+     * @return A JSON object with the unread count, e.g. {@code {"unread": 3}}.
+     */
+    @GET
+    @Path("/unread-count")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getUnreadCount(@QueryParam("orderOwner") String orderOwner) {
+        String owner = orderOwner != null && !orderOwner.trim().isEmpty() ? orderOwner.trim() : null;
+        return Response.ok(Map.of("unread", changeLogService.getUnreadCount(owner))).build();
+    }
+
+    /**
+     * Exports change logs to a Comma Separated Values (CSV) file.
+     *
+     * @param orderOwner An optional query parameter to only export the logs of this order owner.
+     * @return A response containing the CSV file as a stream, with appropriate headers for download.
+     */
+    @GET
+    @Path("/export/csv")
+    @Produces("text/csv")
+    public Response exportChangeLogsCSV(@QueryParam("orderOwner") String orderOwner) {
+        String owner = orderOwner != null && !orderOwner.trim().isEmpty() ? orderOwner.trim() : null;
+        return Response.ok(changeLogService.exportChangeLogsCsv(owner))
+                .header("Content-Disposition", "attachment; filename=\"changelog_export.csv\"")
+                .build();
     }
 
     /**
@@ -10,6 +10,8 @@ import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 import org.saved4.saved4.dto.chat.AdminChat;
 import org.saved4.saved4.dto.chat.Chat;
 import org.saved4.saved4.dto.chat.CompanyChat;
@@ -25,6 +27,17 @@ public class ChatResource {
     @Inject
     private ChatsService chatsService;
 
+    /**
+     * Streams new messages and chat overview updates as Server-Sent Events.
+     */
+    @RolesAllowed({"ADMIN", "COMPANY"})
+    @Path("/events")
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamEvents(@Context SseEventSink eventSink, @Context Sse sse) {
+        chatsService.subscribe(sse, eventSink);
+    }
+
     @RolesAllowed({"ADMIN", "COMPANY"})
     @Path("/{company}")
     @GET
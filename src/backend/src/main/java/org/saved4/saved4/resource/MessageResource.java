@@ -14,6 +14,7 @@ import java.util.List;
 @RolesAllowed({"ADMIN", "COMPANY"})
 @Path("/messages")
 public class MessageResource {
+    private static final int MAX_PAGE_SIZE = 1000;
 
     @Inject
     MessagesService messagesService;
@@ -21,8 +22,17 @@ public class MessageResource {
     @Path("/{company}")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public Response listMessages(@PathParam("company") String company) {
-        List<Message> messages = messagesService.listMessages(company);
+    public Response listMessages(@PathParam("company") String company,
+                                 @QueryParam("after") Integer after,
+                                 @QueryParam("before") Integer before,
+                                 @QueryParam("limit") @DefaultValue("100") int limit) {
+        if (after != null && before != null) {
+            throw new BadRequestException("after and before cannot be combined");
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        List<Message> messages = messagesService.listMessages(company, after, before, limit);
         if (messages == null) {
             return Response.serverError().build();
         }
@@ -6,7 +6,10 @@ import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 import java.util.List;
+import java.util.Map;
 import org.saved4.saved4.dto.Notification;
 import org.saved4.saved4.service.NotificationService;
 
@@ -44,6 +47,31 @@ public class NotificationResource {
         return Response.ok(notifications).build();
     }
 
+    /**
+     * Streams new notifications and read, unread and delete changes as Server-Sent Events.
+     */
+    @GET
+    @Path("/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void streamEvents(@Context SseEventSink eventSink, @Context Sse sse) {
+        notificationService.subscribe(sse, eventSink);
+    }
+
+    /**
+     * Retrieves the number of unread notifications.
+     *
+     * @param recipient Optional query parameter to count only the notifications of this target
+     *                  company, only honoured for admins.
+     * @return A Response object containing the unread count.
+     */
+    @GET
+    @Path("/unread-count")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getUnreadCount(@QueryParam("recipient") String recipient) {
+        int unread = notificationService.getUnreadCount(recipient);
+        return Response.ok(Map.of("unread", unread)).build();
+    }
+
     /**
      * Marks a specific notification as read.
      *
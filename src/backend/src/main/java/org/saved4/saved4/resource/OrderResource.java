@@ -6,16 +6,18 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.StreamingOutput;
-import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.saved4.saved4.dto.Order;
 import org.saved4.saved4.service.OrderService;
 
 @RolesAllowed({"ADMIN", "COMPANY"})
 @Path("/orders")
 public class OrderResource {
+    private static final int MAX_PAGE_SIZE = 1000;
+
     @Inject
     private OrderService orderService;
 
@@ -32,34 +34,66 @@ public class OrderResource {
         return order;
     }
 
-    // List orders for a specific company/user
+    // List orders for a specific company/user, one page of {"orders": [...], "nextAfterId": n}
     @Path("/by-username/{username}")
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public List<Order> listOrdersByUsername(@PathParam("username") String username) {
-        return orderService.getFilteredOrders(null, null, username, null, null, null, null, null,
-                                              null, null, null, null);
+    public Response listOrdersByUsername(@PathParam("username") String username,
+                                         @QueryParam("after_id") Integer afterId,
+                                         @QueryParam("limit") @DefaultValue("100") int limit) {
+        checkLimit(limit);
+        return Response.ok(orderService.streamFilteredOrders(null, null, username, null, null,
+                                                             null, null, null, null, null, null,
+                                                             null, null, null, afterId, limit))
+                .build();
     }
 
-    // List all orders with various query parameters
+    // List all orders with various query parameters, one page of {"orders": [...], "nextAfterId": n}
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public List<Order> listOrders(@QueryParam("container_id") Integer containerId,
-                                  @QueryParam("vehicle_id") Integer vehicleId,
-                                  @QueryParam("requester") String requester,
-                                  @QueryParam("start_date") String startDate,
-                                  @QueryParam("end_date") String endDate,
-                                  @QueryParam("source") String source,
-                                  @QueryParam("destination") String destination,
-                                  @QueryParam("status") List<String> statuses,
-                                  @QueryParam("operation_type") String operationType,
-                                  @QueryParam("order_for") String order_for,
-                                  @QueryParam("is_shared") Boolean is_shared,
-                                  @QueryParam("route_id") Integer routeId,
-                                  @QueryParam("limit") @DefaultValue("100") int limit) {
-        return orderService.getFilteredOrders(containerId, vehicleId, requester, startDate, endDate,
-                                              source, destination, statuses, operationType,
-                                              order_for, is_shared, routeId);
+    public Response listOrders(@QueryParam("container_id") Integer containerId,
+                               @QueryParam("vehicle_id") Integer vehicleId,
+                               @QueryParam("requester") String requester,
+                               @QueryParam("start_date") String startDate,
+                               @QueryParam("end_date") String endDate,
+                               @QueryParam("source") String source,
+                               @QueryParam("destination") String destination,
+                               @QueryParam("status") List<String> statuses,
+                               @QueryParam("operation_type") String operationType,
+                               @QueryParam("order_for") String order_for,
+                               @QueryParam("is_shared") Boolean is_shared,
+                               @QueryParam("route_id") Integer routeId,
+                               @QueryParam("tw_from") String twFrom,
+                               @QueryParam("tw_to") String twTo,
+                               @QueryParam("after_id") Integer afterId,
+                               @QueryParam("limit") @DefaultValue("100") int limit) {
+        checkLimit(limit);
+        Timestamp windowFrom = parseInstant("tw_from", twFrom);
+        Timestamp windowTo = parseInstant("tw_to", twTo);
+        return Response.ok(orderService.streamFilteredOrders(containerId, vehicleId, requester,
+                                                             startDate, endDate, source,
+                                                             destination, statuses,
+                                                             operationType, order_for, is_shared,
+                                                             routeId, windowFrom, windowTo,
+                                                             afterId, limit)).build();
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    // time window bounds are ISO-8601 instants, such as 2025-06-01T00:00:00Z
+    private static Timestamp parseInstant(String name, String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Timestamp.from(Instant.parse(value.trim()));
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException(name + " must be an ISO-8601 instant");
+        }
     }
 
     @POST
@@ -178,85 +212,7 @@ public class OrderResource {
     @Path("/export/xlsx")
     @Produces("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
     public Response exportOrdersExcel(@QueryParam("order_for") String order_for) {
-        List<Order> orders = orderService.exportOrders(order_for);
-
-        StreamingOutput stream = output -> {
-            try (Workbook workbook = new XSSFWorkbook()) {
-                Sheet sheet = workbook.createSheet("Orders Data");
-
-                String[] headers =
-                        {"Order ID", "Container ID", "Vehicle ID", "Requester", "Route ID",
-                                "Made At", "Source", "Destination", "Is Shared", "TW Start",
-                                "TW End", "ETA", "Status", "Operation Type", "Freight Value",
-                                "Freight Type", "Freight Weight", "Order For"};
-
-                Row headerRow = sheet.createRow(0);
-                for (int i = 0; i < headers.length; i++) {
-                    Cell cell = headerRow.createCell(i);
-                    cell.setCellValue(headers[i]);
-                    Font headerFont = workbook.createFont();
-                    headerFont.setBold(true);
-                    CellStyle headerCellStyle = workbook.createCellStyle();
-                    headerCellStyle.setFont(headerFont);
-                    cell.setCellStyle(headerCellStyle);
-                }
-
-                int rowNum = 1;
-                for (Order order : orders) {
-                    Row row = sheet.createRow(rowNum++);
-                    row.createCell(0).setCellValue(order.getOrderId());
-                    row.createCell(1).setCellValue(
-                            order.getContainerId() != null ? order.getContainerId().toString() :
-                                    "");
-                    row.createCell(2).setCellValue(
-                            order.getVehicleId() != null ? order.getVehicleId().toString() : "");
-                    row.createCell(3)
-                            .setCellValue(order.getRequester() != null ? order.getRequester() : "");
-                    row.createCell(4).setCellValue(
-                            order.getRouteId() != null ? order.getRouteId().toString() : "");
-                    row.createCell(5).setCellValue(
-                            order.getMadeAt() != null ? order.getMadeAt().toString() : "");
-                    row.createCell(6)
-                            .setCellValue(order.getSource() != null ? order.getSource() : "");
-                    row.createCell(7).setCellValue(
-                            order.getDestination() != null ? order.getDestination() : "");
-                    row.createCell(8).setCellValue(
-                            order.getShared() != null ? order.getShared().toString() : "");
-                    row.createCell(9).setCellValue(
-                            order.getTwStart() != null ? order.getTwStart().toString() : "");
-                    row.createCell(10).setCellValue(
-                            order.getTwEnd() != null ? order.getTwEnd().toString() : "");
-                    row.createCell(11)
-                            .setCellValue(order.getEta() != null ? order.getEta().toString() : "");
-                    row.createCell(12).setCellValue(
-                            order.getStatus() != null ? order.getStatus().toString() : "");
-                    row.createCell(13).setCellValue(
-                            order.getOperationType() != null ? order.getOperationType().toString() :
-                                    "");
-                    row.createCell(14).setCellValue(
-                            order.getFreightValue() != null ? order.getFreightValue().toString() :
-                                    "");
-                    row.createCell(15).setCellValue(
-                            order.getFreightType() != null ? order.getFreightType().toString() :
-                                    "");
-                    row.createCell(16).setCellValue(
-                            order.getFreightWeight() != null ? order.getFreightWeight().toString() :
-                                    "");
-                    row.createCell(17)
-                            .setCellValue(order.getOrder_for() != null ? order.getOrder_for() : "");
-                }
-
-                for (int i = 0; i < headers.length; i++) {
-                    sheet.autoSizeColumn(i);
-                }
-
-                workbook.write(output);
-                output.flush();
-            } catch (IOException e) {
-                System.err.println("Error while writing excel: " + e.getMessage());
-                throw new WebApplicationException("Excel not generated: " + e.getMessage(), e);
-            }
-        };
+        StreamingOutput stream = orderService.exportOrdersXlsx(order_for);
 
         return Response.ok(stream)
                 .header("Content-Disposition", "attachment; filename=\"orders_export.xlsx\"")
@@ -274,70 +230,7 @@ public class OrderResource {
     @Path("/export/csv")
     @Produces("text/csv")
     public Response exportOrdersCSV(@QueryParam("order_for") String order_for) {
-        List<Order> orders = orderService.exportOrders(order_for);
-
-        StreamingOutput stream = output -> {
-            try {
-                String[] headers =
-                        {"Order ID", "Container ID", "Vehicle ID", "Requested by", "Route ID",
-                                "Made At", "Source", "Destination", "Is Shared", "TW Start",
-                                "TW End", "ETA", "Status", "Operation Type", "Freight Value",
-                                "Freight Type", "Freight Weight"};
-                StringBuilder csvBuilder = new StringBuilder();
-
-                for (String header : headers) {
-                    csvBuilder.append(header).append(",");
-                }
-                csvBuilder.setLength(csvBuilder.length() - 1);
-                csvBuilder.append("\n");
-
-                for (Order order : orders) {
-                    csvBuilder.append(order.getOrderId()).append(",");
-                    csvBuilder.append(order.getContainerId() != null ? order.getContainerId() : "")
-                            .append(",");
-                    csvBuilder.append(order.getVehicleId() != null ? order.getVehicleId() : "")
-                            .append(",");
-                    csvBuilder.append(order.getRequester() != null ? order.getRequester() : "")
-                            .append(",");
-                    csvBuilder.append(order.getRouteId() != null ? order.getRouteId() : "")
-                            .append(",");
-                    csvBuilder.append(order.getMadeAt() != null ? order.getMadeAt().toString() : "")
-                            .append(",");
-                    csvBuilder.append(order.getSource() != null ? order.getSource() : "")
-                            .append(",");
-                    csvBuilder.append(order.getDestination() != null ? order.getDestination() : "")
-                            .append(",");
-                    csvBuilder.append(order.getShared() != null ? order.getShared().toString() : "")
-                            .append(",");
-                    csvBuilder.append(
-                                    order.getTwStart() != null ? order.getTwStart().toString() : "")
-                            .append(",");
-                    csvBuilder.append(order.getTwEnd() != null ? order.getTwEnd().toString() : "")
-                            .append(",");
-                    csvBuilder.append(order.getEta() != null ? order.getEta().toString() : "")
-                            .append(",");
-                    csvBuilder.append(order.getStatus() != null ? order.getStatus().toString() : "")
-                            .append(",");
-                    csvBuilder.append(
-                                    order.getOperationType() != null ? order.getOperationType() : "")
-                            .append(",");
-                    csvBuilder.append(
-                            order.getFreightValue() != null ? order.getFreightValue().toString() :
-                                    "").append(",");
-                    csvBuilder.append(order.getFreightType() != null ? order.getFreightType() : "")
-                            .append(",");
-                    csvBuilder.append(
-                            order.getFreightWeight() != null ? order.getFreightWeight().toString() :
-                                    "").append("\n");
-                }
-
-                output.write(csvBuilder.toString().getBytes());
-                output.flush();
-            } catch (IOException e) {
-                System.err.println("Error while writing CSV: " + e.getMessage());
-                throw new WebApplicationException("CSV not generated: " + e.getMessage(), e);
-            }
-        };
+        StreamingOutput stream = orderService.exportOrdersCsv(order_for);
 
         return Response.ok(stream)
                 .header("Content-Disposition", "attachment; filename=\"orders_export.csv\"")
@@ -5,12 +5,9 @@ import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.StreamingOutput;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.saved4.saved4.dto.Vehicle;
 import org.saved4.saved4.service.VehicleService;
 
-import java.io.IOException;
 import java.util.List;
 
 @Path("/vehicle")
@@ -159,49 +156,7 @@ public class VehicleResource {
     @Path("/export/xlsx")
     @Produces("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
     public Response exportVehiclesExcel() {
-        List<Vehicle> vehicles = vehicleService.exportVehicles();
-
-        StreamingOutput stream = output -> {
-            try (Workbook workbook = new XSSFWorkbook()) {
-                Sheet sheet = workbook.createSheet("Vehicles Data");
-
-                String[] headers = {"ID", "Latitude", "Longitude", "Battery Level", "Status", "Milage (km)"};
-
-                Row headerRow = sheet.createRow(0);
-                for (int i = 0; i < headers.length; i++) {
-                    Cell cell = headerRow.createCell(i);
-                    cell.setCellValue(headers[i]);
-                    Font headerFont = workbook.createFont();
-                    headerFont.setBold(true);
-                    CellStyle headerCellStyle = workbook.createCellStyle();
-                    headerCellStyle.setFont(headerFont);
-                    cell.setCellStyle(headerCellStyle);
-                }
-
-                int rowNum = 1;
-                for (Vehicle vehicle : vehicles) {
-                    Row row = sheet.createRow(rowNum++);
-                    row.createCell(0).setCellValue("VEH_" + vehicle.getVehicleId());
-                    String formattedLatitude = String.format("%.5f", vehicle.getPosition().x);
-                    String formattedLongitude = String.format("%.5f", vehicle.getPosition().y);
-                    row.createCell(1).setCellValue(formattedLatitude);
-                    row.createCell(2).setCellValue(formattedLongitude);
-                    row.createCell(3).setCellValue(vehicle.getBattery_level());
-                    row.createCell(4).setCellValue(vehicle.getStatus().name());
-                    row.createCell(5).setCellValue(vehicle.getDistance());
-                }
-
-                for (int i = 0; i < headers.length; i++) {
-                    sheet.autoSizeColumn(i);
-                }
-
-                workbook.write(output);
-                output.flush();
-            } catch (IOException e) {
-                System.err.println("Error while writing excel" + e.getMessage());
-                throw new WebApplicationException("Excel not generated" + e.getMessage(), e);
-            }
-        };
+        StreamingOutput stream = vehicleService.exportVehiclesXlsx();
 
         return Response.ok(stream)
                 .header("Content-Disposition", "attachment; filename=\"vehicles_export.xlsx\"")
@@ -218,38 +173,7 @@ public class VehicleResource {
     @Path("/export/csv")
     @Produces("text/csv")
     public Response exportVehiclesCSV() {
-        List<Vehicle> vehicles = vehicleService.exportVehicles();
-
-        StreamingOutput stream = output -> {
-            try {
-                String[] headers = {"ID", "Latitude", "Longitude", "Battery Level", "Status", "Milage (km)"};
-                StringBuilder csvBuilder = new StringBuilder();
-
-                for (String header : headers) {
-                    csvBuilder.append(header).append(",");
-                }
-                csvBuilder.setLength(csvBuilder.length() - 1);
-                csvBuilder.append("\n");
-
-
-                for (Vehicle vehicle : vehicles) {
-                    csvBuilder.append("VEH_").append(vehicle.getVehicleId()).append(",");
-                    String formattedLatitude = String.format("%.5f", vehicle.getPosition().x);
-                    String formattedLongitude = String.format("%.5f", vehicle.getPosition().y);
-                    csvBuilder.append(formattedLatitude).append(",");
-                    csvBuilder.append(formattedLongitude).append(",");
-                    csvBuilder.append(vehicle.getBattery_level()).append(",");
-                    csvBuilder.append(vehicle.getStatus().name()).append(",");
-                    csvBuilder.append(vehicle.getDistance()).append("\n");
-                }
-
-                output.write(csvBuilder.toString().getBytes());
-                output.flush();
-            } catch (IOException e) {
-                System.err.println("Error while writing CSV: " + e.getMessage());
-                throw new WebApplicationException("CSV not generated: " + e.getMessage(), e);
-            }
-        };
+        StreamingOutput stream = vehicleService.exportVehiclesCsv();
 
         return Response.ok(stream)
                 .header("Content-Disposition", "attachment; filename=\"vehicles_export.csv\"")
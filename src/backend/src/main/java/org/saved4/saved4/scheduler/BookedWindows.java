@@ -0,0 +1,126 @@
+package org.saved4.saved4.scheduler;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.saved4.saved4.enums.OrderStatus;
+
+/**
+ * Booked {@code [start, end)} windows of a set of resources (vehicles, containers), one booking
+ * per order. Bookings of a resource are kept sorted by end time, so overlap queries only walk the
+ * bookings that end after the queried start. Not thread-safe; owners synchronize access.
+ */
+final class BookedWindows {
+    /**
+     * Order statuses that hold a booking on their vehicle and container.
+     */
+    static final List<String> BOOKING_STATUSES =
+            List.of(OrderStatus.created.getDbValue(), OrderStatus.scheduled.getDbValue());
+
+    private static final Comparator<Booking> BY_END =
+            Comparator.comparingLong((Booking b) -> b.end)
+                    .thenComparingLong(b -> b.start)
+                    .thenComparingInt(b -> b.orderId);
+
+    private final Map<Integer, NavigableSet<Booking>> bookingsByResource = new TreeMap<>();
+    private final Map<Integer, Booking> bookingsByOrder = new HashMap<>();
+
+    void clear() {
+        bookingsByResource.clear();
+        bookingsByOrder.clear();
+    }
+
+    void addResource(int resourceId) {
+        bookingsByResource.putIfAbsent(resourceId, new TreeSet<>(BY_END));
+    }
+
+    void removeResource(int resourceId) {
+        NavigableSet<Booking> bookings = bookingsByResource.remove(resourceId);
+        if (bookings != null) {
+            bookings.forEach(booking -> bookingsByOrder.remove(booking.orderId));
+        }
+    }
+
+    /**
+     * Returns the known resource ids in ascending order.
+     */
+    Set<Integer> resourceIds() {
+        return bookingsByResource.keySet();
+    }
+
+    /**
+     * Books the window for the order, replacing any booking it held before. Bookings on resources
+     * that were never added, or were removed, only release the old booking, so a late update
+     * cannot bring a deleted resource back.
+     */
+    void book(int orderId, int resourceId, long start, long end) {
+        release(orderId);
+        NavigableSet<Booking> bookings = bookingsByResource.get(resourceId);
+        if (bookings == null) {
+            return;
+        }
+        Booking booking = new Booking(orderId, resourceId, start, end);
+        bookingsByOrder.put(orderId, booking);
+        bookings.add(booking);
+    }
+
+    void release(int orderId) {
+        Booking booking = bookingsByOrder.remove(orderId);
+        if (booking != null) {
+            NavigableSet<Booking> bookings = bookingsByResource.get(booking.resourceId);
+            if (bookings != null) {
+                bookings.remove(booking);
+            }
+        }
+    }
+
+    /**
+     * Returns the latest end of the bookings of the resource that overlap {@code [start, end)},
+     * or {@code start} if there are none.
+     */
+    long latestOverlappingEnd(int resourceId, long start, long end) {
+        NavigableSet<Booking> bookings = bookingsByResource.get(resourceId);
+        if (bookings == null) {
+            return start;
+        }
+        Iterator<Booking> it = bookings.descendingIterator();
+        while (it.hasNext()) {
+            Booking booking = it.next();
+            if (booking.end <= start) {
+                break;
+            }
+            if (booking.start < end) {
+                return booking.end;
+            }
+        }
+        return start;
+    }
+
+    boolean isFree(int resourceId, long start, long end) {
+        return latestOverlappingEnd(resourceId, start, end) == start;
+    }
+
+    static boolean holdsBooking(OrderStatus status) {
+        return status == OrderStatus.created || status == OrderStatus.scheduled;
+    }
+
+    private static final class Booking {
+        private final int orderId;
+        private final int resourceId;
+        private final long start;
+        private final long end;
+
+        private Booking(int orderId, int resourceId, long start, long end) {
+            this.orderId = orderId;
+            this.resourceId = resourceId;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.saved4.saved4.scheduler;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.saved4.saved4.dao.ContainerDao;
+import org.saved4.saved4.dao.OrderDao;
+import org.saved4.saved4.dto.Container;
+import org.saved4.saved4.dto.Order;
+import org.saved4.saved4.enums.Role;
+
+/**
+ * Best-fit container allocation from memory.
+ * <p>
+ * Active containers are indexed by {@code max_weight}, and the windows they are booked for are
+ * kept per container in the same way {@link VehicleAvailabilityIndex} does for vehicles. An
+ * allocation looks up the smallest capacity that still fits the freight and returns the first
+ * container of that size or larger that is free for the whole window. The index is loaded lazily
+ * and kept current by {@code OrderService} and {@code ContainerService}.
+ */
+@ApplicationScoped
+public class ContainerAllocator {
+    private static final Role ROLE = Role.ADMIN;
+
+    @Inject
+    private ContainerDao containerDao;
+    @Inject
+    private OrderDao orderDao;
+
+    // guarded by this
+    private final NavigableMap<Float, NavigableSet<Integer>> containersByCapacity = new TreeMap<>();
+    private final BookedWindows windows = new BookedWindows();
+    private boolean loaded;
+
+    /**
+     * Drops the index so that it is rebuilt from the database on next use, e.g. after a
+     * container was added, resized or removed.
+     */
+    public synchronized void reload() {
+        loaded = false;
+    }
+
+    /**
+     * Returns the smallest container that can carry {@code freightWeight} and is free for
+     * {@code [start, end)}, or null if there is none.
+     */
+    public synchronized Integer allocate(BigDecimal freightWeight, Timestamp start, Timestamp end) {
+        ensureLoaded();
+        float weight = freightWeight == null ? 0f : freightWeight.floatValue();
+        for (NavigableSet<Integer> containerIds : containersByCapacity.tailMap(weight, true).values()) {
+            for (Integer containerId : containerIds) {
+                if (windows.isFree(containerId, start.getTime(), end.getTime())) {
+                    return containerId;
+                }
+            }
+        }
+        return null;
+    }
+
+    public synchronized boolean isFree(int containerId, Timestamp start, Timestamp end) {
+        ensureLoaded();
+        return windows.isFree(containerId, start.getTime(), end.getTime());
+    }
+
+    /**
+     * Replaces the booking held by the given order with its current container and window.
+     *
+     * @param order the order as it was just written to the database
+     */
+    public synchronized void update(Order order) {
+        if (!loaded) {
+            return;
+        }
+        if (holdsBooking(order)) {
+            book(order);
+        } else {
+            windows.release(order.getOrderId());
+        }
+    }
+
+    public synchronized void remove(int orderId) {
+        windows.release(orderId);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        containersByCapacity.clear();
+        windows.clear();
+        List<Container> containers;
+        try {
+            containers = containerDao.list(ROLE);
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+        for (Container container : containers) {
+            containersByCapacity.computeIfAbsent(container.getMaxWeight(), w -> new TreeSet<>())
+                    .add(container.getContainerId());
+            windows.addResource(container.getContainerId());
+        }
+        List<Order> bookedOrders =
+                orderDao.getFilteredOrders(ROLE, null, null, null, null, null, null, null, null,
+                                           BookedWindows.BOOKING_STATUSES, null, null, null, null);
+        for (Order order : bookedOrders) {
+            if (holdsBooking(order)) {
+                book(order);
+            }
+        }
+        loaded = true;
+    }
+
+    private void book(Order order) {
+        windows.book(order.getOrderId(), order.getContainerId(), order.getTwStart().getTime(),
+                     order.getTwEnd().getTime());
+    }
+
+    private static boolean holdsBooking(Order order) {
+        return order.getContainerId() != null && order.getContainerId() != 0 &&
+                order.getTwStart() != null && order.getTwEnd() != null &&
+                BookedWindows.holdsBooking(order.getStatus());
+    }
+}
@@ -1,4 +1,248 @@
 package org.saved4.saved4.scheduler;
 
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.context.control.RequestContextController;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import org.saved4.saved4.dao.OrderDao;
+import org.saved4.saved4.dto.Order;
+import org.saved4.saved4.enums.OrderStatus;
+import org.saved4.saved4.enums.Role;
+import org.saved4.saved4.service.AssignmentService;
+import org.saved4.saved4.service.OrderService;
+
+/**
+ * Background engine that moves orders through their lifecycle at the moment a transition is due.
+ * <p>
+ * Every tracked order has at most one pending transition in a {@link DelayQueue}: created orders
+ * are assigned right away and retried until their time window has ended, scheduled orders start
+ * at their departure time, undergoing orders finish at their ETA and the vehicle of an order
+ * canceled mid-trip is released. The queue is filled once from the database at startup and kept
+ * up to date by {@link OrderService} whenever an order is inserted, updated, started, finished or
+ * deleted, so no client has to poll for transitions.
+ */
+@ApplicationScoped
 public class OrderAssignmentScheduler {
+    private static final Role ROLE = Role.ADMIN;
+    private static final long ASSIGNMENT_RETRY_MS = TimeUnit.MINUTES.toMillis(1);
+
+    @Inject
+    private OrderDao orderDao;
+    @Inject
+    private OrderService orderService;
+    @Inject
+    private AssignmentService assignmentService;
+    @Inject
+    private RequestContextController requestContextController;
+
+    private final DelayQueue<Transition> queue = new DelayQueue<>();
+    private final Map<Integer, Transition> pending = new ConcurrentHashMap<>();
+    private Thread worker;
+
+    void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+        start();
+    }
+
+    /**
+     * Loads all orders and starts the worker thread. Calling it again has no effect.
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        resync();
+        worker = new Thread(this::run, "order-lifecycle-scheduler");
+        worker.setDaemon(true);
+        worker.start();
+        System.out.println("[SCHEDULER] Started with " + pending.size() + " pending transitions");
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    /**
+     * Rebuilds the pending transitions from the orders currently in the database.
+     */
+    public void resync() {
+        Set<Integer> seen = new HashSet<>();
+        for (Order order : orderDao.getAllOrdersDB(ROLE)) {
+            seen.add(order.getOrderId());
+            track(order);
+        }
+        pending.keySet().retainAll(seen);
+    }
+
+    /**
+     * (Re)schedules the next transition of the given order, replacing any pending one.
+     * Orders that have nothing left to do are dropped.
+     *
+     * @param order the order as it was just written to the database
+     */
+    public void track(Order order) {
+        Transition next = nextTransition(order, System.currentTimeMillis());
+        if (next == null) {
+            untrack(order.getOrderId());
+        } else {
+            schedule(next);
+        }
+    }
+
+    /**
+     * Forgets the pending transition of an order, e.g. because it was deleted or canceled.
+     * The entry still in the queue is skipped when it comes due.
+     */
+    public void untrack(int orderId) {
+        pending.remove(orderId);
+    }
+
+    private void schedule(Transition transition) {
+        pending.put(transition.orderId, transition);
+        queue.offer(transition);
+    }
+
+    private static Transition nextTransition(Order order, long now) {
+        if (order.getStatus() == null) {
+            return null;
+        }
+        switch (order.getStatus()) {
+            case created:
+                return windowEnded(order, now) ? null :
+                        new Transition(order.getOrderId(), Kind.ASSIGN, now);
+            case scheduled:
+                return order.getDepartureTime() == null ? null :
+                        new Transition(order.getOrderId(), Kind.START, order.getDepartureTime().getTime());
+            case undergoing:
+                return order.getEta() == null ? null :
+                        new Transition(order.getOrderId(), Kind.FINISH, order.getEta().getTime());
+            case canceled:
+                Timestamp departure = order.getDepartureTime();
+                Timestamp eta = order.getEta();
+                if (order.getVehicleId() != null && departure != null && eta != null &&
+                        departure.getTime() < now && eta.getTime() > now) {
+                    return new Transition(order.getOrderId(), Kind.STOP_VEHICLE, now);
+                }
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    private static boolean windowEnded(Order order, long at) {
+        return order.getTwEnd() != null && order.getTwEnd().getTime() <= at;
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            Transition transition;
+            try {
+                transition = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            // superseded by a newer transition or untracked in the meantime
+            if (!pending.remove(transition.orderId, transition)) {
+                continue;
+            }
+            try {
+                fire(transition);
+            } catch (RuntimeException e) {
+                System.err.println("[SCHEDULER] " + transition.kind + " failed for order " +
+                                           transition.orderId + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void fire(Transition transition) {
+        requestContextController.activate();
+        try {
+            long now = System.currentTimeMillis();
+            Order order = orderDao.getOrderByIdDB(ROLE, null, transition.orderId, null);
+            if (order == null) {
+                return;
+            }
+            Transition current = nextTransition(order, now);
+            if (current == null) {
+                return;
+            }
+            if (current.kind != transition.kind || current.dueAt > now) {
+                // the order changed without us being told, follow the database
+                schedule(current);
+                return;
+            }
+
+            System.out.println("[SCHEDULER] " + transition.kind + " order " + order.getOrderId());
+            switch (transition.kind) {
+                case ASSIGN:
+                    try {
+                        assignmentService.orderAssignmentAfterCreated(order);
+                    } finally {
+                        // a successful assignment is re-tracked by OrderService.updateOrder, an
+                        // order that cannot be assigned before its window ends is given up on
+                        long retryAt = now + ASSIGNMENT_RETRY_MS;
+                        if (!pending.containsKey(order.getOrderId()) &&
+                                !windowEnded(order, retryAt)) {
+                            schedule(new Transition(order.getOrderId(), Kind.ASSIGN, retryAt));
+                        }
+                    }
+                    break;
+                case START:
+                case FINISH:
+                    // one pass moves every order that is due, this one included. The moved
+                    // orders are re-tracked by OrderService, which supersedes their own queued
+                    // transitions and schedules the finish at the ETA. The cutoff is the time
+                    // this transition was found due, not the database clock
+                    orderService.advanceDueOrders(ROLE, null, new Timestamp(now));
+                    break;
+                case STOP_VEHICLE:
+                    orderService.stopVehicle(ROLE, order.getVehicleId());
+                    break;
+                default:
+                    break;
+            }
+        } finally {
+            requestContextController.deactivate();
+        }
+    }
+
+    private enum Kind {
+        ASSIGN, START, FINISH, STOP_VEHICLE
+    }
+
+    private static final class Transition implements Delayed {
+        private final int orderId;
+        private final Kind kind;
+        private final long dueAt;
+
+        private Transition(int orderId, Kind kind, long dueAt) {
+            this.orderId = orderId;
+            this.kind = kind;
+            this.dueAt = dueAt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAt, ((Transition) other).dueAt);
+        }
+    }
 }
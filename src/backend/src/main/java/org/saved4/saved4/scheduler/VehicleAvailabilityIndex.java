@@ -0,0 +1,118 @@
+package org.saved4.saved4.scheduler;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import org.saved4.saved4.dao.OrderDao;
+import org.saved4.saved4.dao.VehicleDAO;
+import org.saved4.saved4.dto.Order;
+import org.saved4.saved4.dto.Vehicle;
+import org.saved4.saved4.enums.Role;
+
+/**
+ * In-memory index of the {@code [tw_start, tw_end)} windows every vehicle is booked for.
+ * <p>
+ * Only created and scheduled orders hold a booking, matching what the assignment used to query.
+ * The index is loaded lazily from the database and kept current by {@code OrderService} on every
+ * order write and by {@code VehicleService} when vehicles are added or removed, so availability
+ * checks never touch the database. It assumes this application is the only writer of orders.
+ */
+@ApplicationScoped
+public class VehicleAvailabilityIndex {
+    private static final Role ROLE = Role.ADMIN;
+
+    @Inject
+    private OrderDao orderDao;
+    @Inject
+    private VehicleDAO vehicleDAO;
+
+    // guarded by this
+    private final BookedWindows windows = new BookedWindows();
+    private boolean loaded;
+
+    /**
+     * Drops the index so that it is rebuilt from the database on next use.
+     */
+    public synchronized void reload() {
+        loaded = false;
+    }
+
+    /**
+     * Returns the earliest moment at or after {@code start} from which the vehicle is free until
+     * {@code end}, or null if a booking overlaps {@code end} itself.
+     */
+    public synchronized Timestamp earliestFreeStart(int vehicleId, Timestamp start, Timestamp end) {
+        ensureLoaded();
+        long earliest = windows.latestOverlappingEnd(vehicleId, start.getTime(), end.getTime());
+        return earliest < end.getTime() ? new Timestamp(earliest) : null;
+    }
+
+    /**
+     * Returns the ids of all known vehicles in ascending order.
+     */
+    public synchronized List<Integer> vehicleIds() {
+        ensureLoaded();
+        return new ArrayList<>(windows.resourceIds());
+    }
+
+    public synchronized void addVehicle(int vehicleId) {
+        if (loaded) {
+            windows.addResource(vehicleId);
+        }
+    }
+
+    public synchronized void removeVehicle(int vehicleId) {
+        windows.removeResource(vehicleId);
+    }
+
+    /**
+     * Replaces the booking held by the given order with its current vehicle and window.
+     *
+     * @param order the order as it was just written to the database
+     */
+    public synchronized void update(Order order) {
+        if (!loaded) {
+            return;
+        }
+        if (holdsBooking(order)) {
+            book(order);
+        } else {
+            windows.release(order.getOrderId());
+        }
+    }
+
+    public synchronized void remove(int orderId) {
+        windows.release(orderId);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        windows.clear();
+        for (Vehicle vehicle : vehicleDAO.getAllVehiclesDB(ROLE)) {
+            windows.addResource(vehicle.getVehicleId());
+        }
+        List<Order> bookedOrders =
+                orderDao.getFilteredOrders(ROLE, null, null, null, null, null, null, null, null,
+                                           BookedWindows.BOOKING_STATUSES, null, null, null, null);
+        for (Order order : bookedOrders) {
+            if (holdsBooking(order)) {
+                book(order);
+            }
+        }
+        loaded = true;
+    }
+
+    private void book(Order order) {
+        windows.book(order.getOrderId(), order.getVehicleId(), order.getTwStart().getTime(),
+                     order.getTwEnd().getTime());
+    }
+
+    private static boolean holdsBooking(Order order) {
+        return order.getVehicleId() != null && order.getTwStart() != null &&
+                order.getTwEnd() != null && BookedWindows.holdsBooking(order.getStatus());
+    }
+}
@@ -0,0 +1,110 @@
+package org.saved4.saved4.service;
+
+import jakarta.inject.Singleton;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cache of {@link AnalyticsService} results, keyed by the metric and its normalized arguments, so
+ * dashboards refreshing the same view do not re-run the analytics queries.
+ * <p>
+ * Every entry records which tables it was computed from. {@code OrderDao} and {@code VehicleDAO}
+ * call {@link #invalidate(Source)} after each write, which drops the entries depending on that
+ * table. Entries also expire after a TTL, short for order metrics since their default ranges move
+ * with the current date, and the least recently used entry is evicted once {@link #MAX_ENTRIES}
+ * is reached.
+ */
+@Singleton
+public class AnalyticsCache {
+    private static final long ORDER_TTL_MS = TimeUnit.MINUTES.toMillis(1);
+    private static final long VEHICLE_TTL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final int MAX_ENTRIES = 500;
+
+    /**
+     * The tables analytics results are computed from.
+     */
+    public enum Source {
+        ORDERS, VEHICLES
+    }
+
+    // guarded by itself
+    private final Map<List<Object>, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    // bumped by every invalidation, guarded by entries
+    private long generation;
+
+    /**
+     * Returns the cached result of the metric for the given arguments, computing and caching it
+     * with {@code loader} if there is none.
+     *
+     * @param metric  name of the metric, unique per result type
+     * @param sources the tables the result is computed from
+     * @param loader  computes the result
+     * @param args    the query arguments, compared trimmed and with blank strings as null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String metric, Set<Source> sources, Supplier<T> loader, String... args) {
+        List<Object> key = key(metric, args);
+        long seenGeneration;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt >= System.currentTimeMillis()) {
+                return (T) entry.value;
+            }
+            entries.remove(key);
+            seenGeneration = generation;
+        }
+
+        // computed outside the lock so one slow query does not hold up the other dashboards
+        T value = loader.get();
+        long ttl = sources.contains(Source.ORDERS) ? ORDER_TTL_MS : VEHICLE_TTL_MS;
+        synchronized (entries) {
+            // a write landed while computing, the value may already be stale
+            if (generation == seenGeneration) {
+                entries.put(key, new Entry(value, sources, System.currentTimeMillis() + ttl));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Drops every result computed from the given table.
+     */
+    public void invalidate(Source source) {
+        synchronized (entries) {
+            generation++;
+            entries.values().removeIf(entry -> entry.sources.contains(source));
+        }
+    }
+
+    private static List<Object> key(String metric, String... args) {
+        Object[] key = new Object[args.length + 1];
+        key[0] = metric;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            key[i + 1] = arg == null || arg.trim().isEmpty() ? null : arg.trim();
+        }
+        return Arrays.asList(key);
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final Set<Source> sources;
+        private final long expiresAt;
+
+        private Entry(Object value, Set<Source> sources, long expiresAt) {
+            this.value = value;
+            this.sources = sources;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -2,20 +2,53 @@ package org.saved4.saved4.service;
 
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.InternalServerErrorException;
+import jakarta.ws.rs.ServiceUnavailableException;
+import org.saved4.saved4.DBProvider;
 import org.saved4.saved4.dao.AnalyticsDao;
 import org.saved4.saved4.dto.AnalyticsStats;
+import org.saved4.saved4.service.AnalyticsCache.Source;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Service class for retrieving and aggregating analytics data.
  * It interacts with the AnalyticsDao to fetch raw data and
  * provides higher-level methods to get categorized statistics.
+ * Results are served from the {@link AnalyticsCache} while no order or vehicle was written.
+ * The overviews that need several independent DAO calls run them concurrently on virtual threads.
+ * Together, the analytics queries of all requests hold at most {@link #MAX_CONCURRENT_QUERIES}
+ * connections, half of the pool, so busy dashboards cannot starve order and vehicle writes.
  */
 @RequestScoped
 public class AnalyticsService {
     @Inject
     private AnalyticsDao analyticsDAO;
+    @Inject
+    private AnalyticsCache cache;
+
+    private static final Set<Source> ORDERS = EnumSet.of(Source.ORDERS);
+    private static final Set<Source> VEHICLES = EnumSet.of(Source.VEHICLES);
+    private static final Set<Source> ORDERS_AND_VEHICLES = EnumSet.allOf(Source.class);
+
+    // shared by all requests, every query gets its own virtual thread
+    private static final ExecutorService QUERY_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final int MAX_CONCURRENT_QUERIES = Math.max(1, DBProvider.getPoolSize() / 2);
+    private static final long QUERY_DEADLINE_MS = TimeUnit.SECONDS.toMillis(10);
+
+    // static, so the cap is shared by all requests rather than one request's fan-out
+    private static final Semaphore QUERY_PERMITS = new Semaphore(MAX_CONCURRENT_QUERIES);
 
     /**
      * Retrieves an overview of order statistics for a specified period.
@@ -24,9 +57,15 @@ public class AnalyticsService {
      * @return An AnalyticsStats object containing total orders, completed orders, completion rate, and order volume.
      */
     public AnalyticsStats getOrderOverview(String period) {
+        return cache.get("orderOverview", ORDERS, () -> computeOrderOverview(period), period);
+    }
+
+    private AnalyticsStats computeOrderOverview(String period) {
         AnalyticsStats stats = new AnalyticsStats();
-        stats.setTotalOrders(analyticsDAO.getTotalOrders(null, null, null));
-        stats.setCompletedOrders(analyticsDAO.getCompletedOrders(null, null, null));
+        runConcurrently(
+                () -> stats.setTotalOrders(analyticsDAO.getTotalOrders(null, null, null)),
+                () -> stats.setCompletedOrders(analyticsDAO.getCompletedOrders(null, null, null)),
+                () -> stats.setOrderVolume(analyticsDAO.getOrderVolumeByPeriod(period, null, null, null)));
 
         int total = stats.getTotalOrders();
         int completed = stats.getCompletedOrders();
@@ -35,7 +74,6 @@ public class AnalyticsService {
         } else {
             stats.setCompletionRate(0.0);
         }
-        stats.setOrderVolume(analyticsDAO.getOrderVolumeByPeriod(period, null, null, null));
         return stats;
     }
 
@@ -45,10 +83,15 @@ public class AnalyticsService {
      * @return An AnalyticsStats object containing total vehicles, available vehicles, and vehicle status distribution.
      */
     public AnalyticsStats getVehicleOverview() {
+        return cache.get("vehicleOverview", VEHICLES, this::computeVehicleOverview);
+    }
+
+    private AnalyticsStats computeVehicleOverview() {
         AnalyticsStats stats = new AnalyticsStats();
-        stats.setTotalVehicles(analyticsDAO.getTotalVehicleCount());
-        stats.setAvailableVehicles(analyticsDAO.getAvailableVehicles());
-        stats.setVehicleStatusDistribution(analyticsDAO.getVehicleStatusDistribution());
+        runConcurrently(
+                () -> stats.setTotalVehicles(analyticsDAO.getTotalVehicleCount()),
+                () -> stats.setAvailableVehicles(analyticsDAO.getAvailableVehicles()),
+                () -> stats.setVehicleStatusDistribution(analyticsDAO.getVehicleStatusDistribution()));
         return stats;
     }
 
@@ -58,11 +101,17 @@ public class AnalyticsService {
      * @return An AnalyticsStats object containing total trips, total distance traveled, traveling hours, and average waiting time.
      */
     public AnalyticsStats getShipmentOverview() {
+        // the distance is taken from the vehicles
+        return cache.get("shipmentOverview", ORDERS_AND_VEHICLES, this::computeShipmentOverview);
+    }
+
+    private AnalyticsStats computeShipmentOverview() {
         AnalyticsStats stats = new AnalyticsStats();
-        stats.setTotalTrips(analyticsDAO.getTotalTrips(null, null, null));
-        stats.setTotalDistance(analyticsDAO.getTotalDistanceTraveled(null, null, null));
-        stats.setTravelingHours(analyticsDAO.getTotalTravelingHours(null, null, null));
-        stats.setAverageWaitingTime(analyticsDAO.getAverageWaitingTimeMinutes(null, null, null));
+        runConcurrently(
+                () -> stats.setTotalTrips(analyticsDAO.getTotalTrips(null, null, null)),
+                () -> stats.setTotalDistance(analyticsDAO.getTotalDistanceTraveled(null, null, null)),
+                () -> stats.setTravelingHours(analyticsDAO.getTotalTravelingHours(null, null, null)),
+                () -> stats.setAverageWaitingTime(analyticsDAO.getAverageWaitingTimeMinutes(null, null, null)));
         return stats;
     }
 
@@ -72,10 +121,15 @@ public class AnalyticsService {
      * @return An AnalyticsStats object containing average weight per shipment, shared containers count, and freight type composition.
      */
     public AnalyticsStats getContainerUtilization() {
+        return cache.get("containerUtilization", ORDERS, this::computeContainerUtilization);
+    }
+
+    private AnalyticsStats computeContainerUtilization() {
         AnalyticsStats stats = new AnalyticsStats();
-        stats.setAvgWeightPerShipment(analyticsDAO.getAverageWeightPerShipment(null, null, null));
-        stats.setSharedContainers(analyticsDAO.getSharedContainersCount(null, null, null));
-        stats.setFreightTypeComposition(analyticsDAO.getFreightTypeComposition(null, null, null));
+        runConcurrently(
+                () -> stats.setAvgWeightPerShipment(analyticsDAO.getAverageWeightPerShipment(null, null, null)),
+                () -> stats.setSharedContainers(analyticsDAO.getSharedContainersCount(null, null, null)),
+                () -> stats.setFreightTypeComposition(analyticsDAO.getFreightTypeComposition(null, null, null)));
         return stats;
     }
 
@@ -91,7 +145,9 @@ public class AnalyticsService {
      */
     public Map<String, Object> getOrdersDataForChart(String period, String companyName,
                                                      String startDate, String endDate) {
-        return analyticsDAO.getOrdersDataForChart(period, companyName, startDate, endDate);
+        return cache.get("chart", ORDERS,
+                         () -> analyticsDAO.getOrdersDataForChart(period, companyName, startDate, endDate),
+                         period, companyName, startDate, endDate);
     }
 
     /**
@@ -104,16 +160,16 @@ public class AnalyticsService {
      * @return An AnalyticsStats object containing a comprehensive set of analytics data.
      */
     public AnalyticsStats getAllAnalytics(String period, String companyName, String startDate, String endDate) {
-        AnalyticsStats stats = new AnalyticsStats();
+        return cache.get("all", ORDERS_AND_VEHICLES,
+                         () -> computeAllAnalytics(period, companyName, startDate, endDate),
+                         period, companyName, startDate, endDate);
+    }
 
-        // Vehicle Overview
-        stats.setTotalVehicles(analyticsDAO.getTotalVehicleCount());
-        stats.setAvailableVehicles(analyticsDAO.getAvailableVehicles());
-        stats.setVehicleStatusDistribution(analyticsDAO.getVehicleStatusDistribution());
+    private AnalyticsStats computeAllAnalytics(String period, String companyName, String startDate,
+                                               String endDate) {
+        // Vehicle, order, shipment and container metrics in one round trip
+        AnalyticsStats stats = analyticsDAO.getAllAnalytics(period, companyName, startDate, endDate);
 
-        // Order Overview
-        stats.setTotalOrders(analyticsDAO.getTotalOrders(companyName, startDate, endDate));
-        stats.setCompletedOrders(analyticsDAO.getCompletedOrders(companyName, startDate, endDate));
         int total = stats.getTotalOrders();
         int completed = stats.getCompletedOrders();
         if (total > 0) {
@@ -121,19 +177,8 @@ public class AnalyticsService {
         } else {
             stats.setCompletionRate(0.0);
         }
-        stats.setOrderVolume(analyticsDAO.getOrderVolumeByPeriod(period, companyName, startDate, endDate));
-
-        // Shipment Overview
-        stats.setTotalTrips(analyticsDAO.getTotalTrips(companyName, startDate, endDate));
-        stats.setTotalDistance(analyticsDAO.getTotalDistanceTraveled(companyName, startDate, endDate));
-        stats.setTravelingHours(analyticsDAO.getTotalTravelingHours(companyName, startDate, endDate));
-        stats.setAverageWaitingTime(analyticsDAO.getAverageWaitingTimeMinutes(companyName, startDate, endDate));
-
-        // Container Utilization
-        stats.setAvgWeightPerShipment(analyticsDAO.getAverageWeightPerShipment(companyName, startDate, endDate));
-        stats.setSharedContainers(analyticsDAO.getSharedContainersCount(companyName, startDate, endDate));
-        stats.setFreightTypeComposition(analyticsDAO.getFreightTypeComposition(companyName, startDate, endDate));
-
+        // the full set includes the freight value, which is only part of the user view
+        stats.setTotalFreightValue(0);
         return stats;
     }
 
@@ -147,12 +192,19 @@ public class AnalyticsService {
      * completed orders, total freight value, average weight per shipment, and completion rate.
      */
     public AnalyticsStats getUserAnalytics(String companyName, String startDate, String endDate) {
+        return cache.get("user", ORDERS, () -> computeUserAnalytics(companyName, startDate, endDate),
+                         companyName, startDate, endDate);
+    }
+
+    private AnalyticsStats computeUserAnalytics(String companyName, String startDate, String endDate) {
         AnalyticsStats stats = new AnalyticsStats();
 
-        stats.setTotalOrders(analyticsDAO.getTotalOrders(companyName, startDate, endDate));
-        stats.setCompletedOrders(analyticsDAO.getCompletedOrders(companyName, startDate, endDate));
-        stats.setTotalFreightValue(analyticsDAO.getTotalFreightValue(companyName, startDate, endDate));
-        stats.setAvgWeightPerShipment(analyticsDAO.getAverageWeightPerShipment(companyName, startDate, endDate));
+        // Only the order figures of the single-pass result are part of the user view
+        AnalyticsStats all = analyticsDAO.getAllAnalytics("day", companyName, startDate, endDate);
+        stats.setTotalOrders(all.getTotalOrders());
+        stats.setCompletedOrders(all.getCompletedOrders());
+        stats.setTotalFreightValue(all.getTotalFreightValue());
+        stats.setAvgWeightPerShipment(all.getAvgWeightPerShipment());
 
         // Calculate completion rate for user stats
         int total = stats.getTotalOrders();
@@ -165,4 +217,43 @@ public class AnalyticsService {
 
         return stats;
     }
+
+    /**
+     * Runs independent DAO calls concurrently and waits until all of them are done.
+     * The results are visible to the caller once this returns.
+     *
+     * @throws ServiceUnavailableException if they did not finish within {@link #QUERY_DEADLINE_MS}
+     */
+    private void runConcurrently(Runnable... queries) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(QUERY_DEADLINE_MS);
+        List<Future<?>> futures = new ArrayList<>(queries.length);
+        try {
+            for (Runnable query : queries) {
+                futures.add(QUERY_EXECUTOR.submit(() -> {
+                    QUERY_PERMITS.acquire();
+                    try {
+                        query.run();
+                    } finally {
+                        QUERY_PERMITS.release();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (TimeoutException e) {
+            System.err.println("Analytics queries did not finish within " + QUERY_DEADLINE_MS + " ms");
+            throw new ServiceUnavailableException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerErrorException();
+        } catch (ExecutionException e) {
+            System.err.println("Analytics query failed: " + e.getCause());
+            throw new InternalServerErrorException();
+        } finally {
+            // no-op for finished queries, stops the rest after a failure or the deadline
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
 }
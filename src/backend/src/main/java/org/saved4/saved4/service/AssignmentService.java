@@ -4,24 +4,35 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.NotFoundException;
 import java.math.BigDecimal;
+import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.util.*;
 import java.util.stream.Collectors;
-import org.saved4.saved4.dto.Container;
+import org.saved4.saved4.dao.OrderDao;
+import org.saved4.saved4.dao.UnitOfWork;
 import org.saved4.saved4.dto.Order;
-import org.saved4.saved4.dto.Vehicle;
-import org.saved4.saved4.enums.ContainerStatus;
 import org.saved4.saved4.enums.OrderStatus;
-import org.saved4.saved4.enums.VehicleStatus;
-
+import org.saved4.saved4.enums.Role;
+import org.saved4.saved4.scheduler.ContainerAllocator;
+import org.saved4.saved4.scheduler.VehicleAvailabilityIndex;
+
+/**
+ * Assigns created orders to a vehicle and container. Assignment is driven by the
+ * {@link org.saved4.saved4.scheduler.OrderAssignmentScheduler} in the background, so every
+ * database access is made with the admin role instead of the role of an HTTP request.
+ */
 @ApplicationScoped
 public class AssignmentService {
+    private static final Role ROLE = Role.ADMIN;
+
     @Inject
     private OrderService orderService;
     @Inject
-    private VehicleService vehicleService;
+    private OrderDao orderDao;
     @Inject
-    private ContainerService containerService; // Add ContainerService
+    private VehicleAvailabilityIndex vehicleAvailabilityIndex;
+    @Inject
+    private ContainerAllocator containerAllocator;
 
     /**
      * Checks if a specific vehicle is available for a *continuous slot that ends at or before*
@@ -50,56 +61,8 @@ public class AssignmentService {
             return null;
         }
 
-        List<String> statusFilterList = new ArrayList<>();
-        statusFilterList.add("created");
-        statusFilterList.add("scheduled");
-
-        List<Order> orderObjectList =
-                orderService.getFilteredOrders(null, vehicleId, null, null, null, null, null,
-                                               statusFilterList, null, null, null, null);
-
-        // If no orders, the vehicle is available from requestTwStart to requestTwEnd
-        if (orderObjectList == null || orderObjectList.isEmpty()) {
-            return requestTwStart; // Vehicle is free from the requested start
-        }
-
-        // Sort orders by their end time to process chronologically
-        orderObjectList.sort((o1, o2) -> o1.getTwEnd().compareTo(o2.getTwEnd()));
-
-        Timestamp earliestFreeTime =
-                requestTwStart; // This tracks when the vehicle becomes free *before* requestTwEnd
-
-        for (Order order : orderObjectList) {
-            // Check if the current order overlaps with the *desired* fixed window
-            // The overlap condition needs to be precise for a fixed end time:
-            // An order conflicts if it's active *during* any part of the
-            // [earliestFreeTime, requestTwEnd] interval.
-            boolean conflicts = order.getTwStart().before(requestTwEnd) &&
-                    order.getTwEnd().after(earliestFreeTime);
-
-            if (conflicts) {
-                // If the order's end time is after our current earliest free time,
-                // it means this order pushes out when the vehicle becomes free.
-                if (order.getTwEnd().after(earliestFreeTime)) {
-                    earliestFreeTime = order.getTwEnd();
-                }
-
-                // IMPORTANT: If `earliestFreeTime` moves to or beyond `requestTwEnd`,
-                // it means there's no continuous slot ending at `requestTwEnd`.
-                if (earliestFreeTime.after(requestTwEnd) || earliestFreeTime.equals(requestTwEnd)) {
-                    return null; // Vehicle is occupied right up to or past the desired end time
-                }
-            }
-        }
-
-        // If we reach here, `earliestFreeTime` is the point from which the vehicle is free
-        // up to `requestTwEnd`. This is the adjusted start time for the available slot.
-        // It must be before requestTwEnd.
-        if (earliestFreeTime.before(requestTwEnd)) {
-            return earliestFreeTime;
-        }
-
-        return null; // Should not be reached if earliestFreeTime.before(requestTwEnd) is true above
+        // Booked windows are kept in memory, so this no longer queries the orders table
+        return vehicleAvailabilityIndex.earliestFreeStart(vehicleId, requestTwStart, requestTwEnd);
     }
 
 
@@ -122,17 +85,17 @@ public class AssignmentService {
             return null;
         }
 
-        List<Vehicle> vehicleObjectList = vehicleService.getAllVehicles();
+        List<Integer> vehicleIds = vehicleAvailabilityIndex.vehicleIds();
 
-        if (vehicleObjectList == null || vehicleObjectList.isEmpty()) {
+        if (vehicleIds.isEmpty()) {
             System.out.println("No vehicles found in the system.");
             return null;
         }
 
-        for (Vehicle vehicle : vehicleObjectList) {
+        for (Integer vehicleId : vehicleIds) {
             // Get the adjusted start time for this vehicle, keeping tw_end fixed
             Timestamp adjustedStartTime =
-                    getAvailableStartTimeForFixedEndTime(vehicle.getVehicleId(), tw_start, tw_end);
+                    getAvailableStartTimeForFixedEndTime(vehicleId, tw_start, tw_end);
 
             if (adjustedStartTime != null) {
                 // If adjustedStartTime is not null, it means the vehicle is available
@@ -154,7 +117,7 @@ public class AssignmentService {
                         Map<Integer, Map<Timestamp, Timestamp>> result = new HashMap<>();
                         Map<Timestamp, Timestamp> slot = new HashMap<>();
                         slot.put(lastEntry.getKey(), lastEntry.getValue());
-                        result.put(vehicle.getVehicleId(), slot);
+                        result.put(vehicleId, slot);
                         return result; // Return the first vehicle found with an available slot
                     }
                 }
@@ -221,34 +184,6 @@ public class AssignmentService {
     }
 
 
-    // assign order and vehicle and container
-    public Order assignOrderToVehicleAndContainer(Order order, Vehicle vehicle,
-                                                  Container container) {
-
-        if (order == null) {
-            throw new NotFoundException("Order not found");
-        }
-        if (vehicle == null) {
-            throw new NotFoundException("Vehicle not found");
-        }
-        if (container == null) {
-            throw new NotFoundException("Container not found");
-        }
-
-        order.setVehicleId(vehicle.getVehicleId());
-        order.setContainerId(container.getContainerId());
-        order.setStatus(OrderStatus.scheduled);
-
-        vehicle.setStatus(VehicleStatus.in_use);
-        container.setContainerStatus(ContainerStatus.in_use);
-
-        orderService.updateOrder(order.getOrderId(), order);
-        vehicleService.updateVehicle(vehicle.getVehicleId(), vehicle);
-        containerService.updateContainer(container.getContainerId(), container);
-
-        return order;
-    }
-
     /**
      * Check all the orders that starts after the given twStart.
      *
@@ -259,8 +194,8 @@ public class AssignmentService {
         statusFilterList.add("scheduled");
 
         List<Order> orderList;
-        orderList = orderService.getFilteredOrders(null, null, null, null, null, null, null,
-                                                   statusFilterList, null, null, null, null);
+        orderList = orderDao.getFilteredOrders(ROLE, null, null, null, null, null, null, null,
+                                               null, statusFilterList, null, null, null, null);
 
         if (orderList == null || orderList.isEmpty()) {
             System.out.println("No orders found in the system.");
@@ -336,12 +271,24 @@ public class AssignmentService {
                                                                    order.getRouteId());
                                 order.setShared(true);
                                 System.out.println("order: " + order);
-                                // update the new order
-                                orderService.updateOrder(order.getOrderId(), order);
-
                                 existingOrder.setShared(true);
                                 System.out.println("existing: " + existingOrder);
-                                orderService.updateOrder(existingOrder.getOrderId(), existingOrder);
+                                // both orders are shared together or not at all
+                                try (UnitOfWork work = new UnitOfWork(ROLE, null)) {
+                                    if (orderService.updateOrder(work, order.getOrderId(),
+                                                                 order) == null ||
+                                            orderService.updateOrder(work,
+                                                                     existingOrder.getOrderId(),
+                                                                     existingOrder) == null) {
+                                        return null;
+                                    }
+                                    work.commit();
+                                } catch (SQLException e) {
+                                    System.err.println("Error sharing order " +
+                                                               order.getOrderId() + ": " +
+                                                               e.getMessage());
+                                    return null;
+                                }
                                 return order; // stop here if success
                             }
                         }
@@ -352,59 +299,45 @@ public class AssignmentService {
             }
         }
 
-        Integer orderRouteId = null;
-        //                Inserting new route
-        //                if (order.getRouteId() == null) {
-        //                    orderRouteId = orderService.insertNewRoute();
-        //                    order.setRouteId(orderRouteId);
-        //                } else {
-        //                    orderRouteId = order.getRouteId();
-        //                }
-
-        orderRouteId = orderService.insertNewRoute();
+        //            get available vehicles
+        Map<Integer, Map<Timestamp, Timestamp>> availableVehiclesOnATimeWindow =
+                getAvailableVehiclesOnATimeWindow(order.getTwStart(), order.getTwEnd());
+        if (availableVehiclesOnATimeWindow == null || availableVehiclesOnATimeWindow.isEmpty()) {
+            return null; // no vehicle is available
+        }
+        Map.Entry<Integer, Map<Timestamp, Timestamp>> firstEntry =
+                availableVehiclesOnATimeWindow.entrySet().iterator().next();
+        Integer vehicleId = firstEntry.getKey();
+
+        Map.Entry<Timestamp, Timestamp> timeWindow =
+                firstEntry.getValue().entrySet().iterator().next();
+        Timestamp twStart = timeWindow.getKey();
+        Timestamp twEnd = timeWindow.getValue();
+
+        // smallest free container that carries the freight
+        Integer containerId =
+                containerAllocator.allocate(order.getFreightWeight(), twStart, twEnd);
+        if (containerId == null) {
+            System.out.println("no container is available");
+            return order;
+        }
 
+        // only insert the route once the order can be assigned, failed attempts are retried
+        Integer orderRouteId = orderDao.insertRouteDB(ROLE);
         System.out.println("route id" + orderRouteId);
-
-        if (orderRouteId != null) {
-            //            get available vehicles
-            Map<Integer, Map<Timestamp, Timestamp>> availableVehiclesOnATimeWindow =
-                    getAvailableVehiclesOnATimeWindow(order.getTwStart(), order.getTwEnd());
-            if (availableVehiclesOnATimeWindow.isEmpty()) {
-                return null; // no vehicle is available
-            } else {
-                Map.Entry<Integer, Map<Timestamp, Timestamp>> firstEntry =
-                        availableVehiclesOnATimeWindow.entrySet().iterator().next();
-                Integer vehicleId = firstEntry.getKey();
-
-                Map.Entry<Timestamp, Timestamp> timeWindow =
-                        firstEntry.getValue().entrySet().iterator().next();
-                Timestamp twStart = timeWindow.getKey();
-                Timestamp twEnd = timeWindow.getValue();
-
-                // check container availability
-                List<Container> containerList = containerService.getAllContainers();
-                for (Container container : containerList) {
-                    if (getContainerAvailability(container.getContainerId(), twStart, twEnd)) {
-                        //                assigning a vehicle
-                        order = assigningOrderToAttributes(order, vehicleId,
-                                                           container.getContainerId(), twStart,
-                                                           twEnd, orderRouteId);
-                        System.out.println("order: " + order);
-                        orderService.updateOrder(order.getOrderId(), order); // update order
-                        return order;
-                    }
-                }
-                System.out.println("no container is available");
-            }
-
-        } else {
+        if (orderRouteId == null) {
             System.out.println("Error inserting route");
+            return order;
         }
+
+        //                assigning a vehicle
+        order = assigningOrderToAttributes(order, vehicleId, containerId, twStart, twEnd,
+                                           orderRouteId);
+        System.out.println("order: " + order);
+        orderService.updateOrder(ROLE, null, order.getOrderId(), order); // update order
         return order;
     }
 
-    // Keep the original assignOrderToVehicle if it's still used elsewhere,
-    // or remove it if assignOrderToVehicleAndContainer becomes the primary assignment method.
     public Order assigningOrderToAttributes(Order order, Integer vehicleId, Integer containerId,
                                             Timestamp departure, Timestamp eta, Integer routeId) {
         if (order == null) {
@@ -442,55 +375,6 @@ public class AssignmentService {
             return null;
         }
 
-        List<String> statusFilterList = new ArrayList<>();
-        statusFilterList.add("created");
-        statusFilterList.add("scheduled");
-
-        List<Order> orderObjectList =
-                orderService.getFilteredOrders(containerId, null, null, null, null, null, null,
-                                               statusFilterList, null, null, null, null);
-
-        // If no orders, the vehicle is available from requestTwStart to requestTwEnd
-        if (orderObjectList == null || orderObjectList.isEmpty()) {
-            return true; // Container is free from the requested start
-        }
-
-        // Sort orders by their end time to process chronologically
-        orderObjectList.sort((o1, o2) -> o1.getTwEnd().compareTo(o2.getTwEnd()));
-
-        Timestamp earliestFreeTime =
-                departureTime; // This tracks when the container becomes free *before* requestTwEnd
-
-        for (Order order : orderObjectList) {
-            // Check if the current order overlaps with the *desired* fixed window
-            // The overlap condition needs to be precise for a fixed end time:
-            // An order conflicts if it's active *during* any part of the
-            // [earliestFreeTime, requestTwEnd] interval.
-            boolean conflicts = order.getTwStart().before(departureTime) &&
-                    order.getTwEnd().after(earliestFreeTime);
-
-            if (conflicts) {
-                // If the order's end time is after our current earliest free time,
-                // it means this order pushes out when the vehicle becomes free.
-                if (order.getTwEnd().after(earliestFreeTime)) {
-                    earliestFreeTime = order.getTwEnd();
-                }
-
-                // IMPORTANT: If `earliestFreeTime` moves to or beyond `requestTwEnd`,
-                // it means there's no continuous slot ending at `requestTwEnd`.
-                if (earliestFreeTime.after(departureTime) || earliestFreeTime.equals(endTime)) {
-                    return false; // Vehicle is occupied right up to or past the desired end time
-                }
-            }
-        }
-
-        // If we reach here, `earliestFreeTime` is the point from which the vehicle is free
-        // up to `requestTwEnd`. This is the adjusted start time for the available slot.
-        // It must be before requestTwEnd.
-        if (earliestFreeTime.before(endTime)) {
-            return true;
-        }
-
-        return null; // Should not be reached if earliestFreeTime.before(requestTwEnd) is true above
+        return containerAllocator.isFree(containerId, departureTime, endTime);
     }
 }
@@ -1,10 +1,20 @@
 package org.saved4.saved4.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.InternalServerErrorException;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.List;
+import java.util.stream.Collectors;
 import org.saved4.saved4.dao.ChangeLogDao;
+import org.saved4.saved4.dao.KeysetPageWriter;
 import org.saved4.saved4.dto.ChangeLog;
+import org.saved4.saved4.dto.ChangeStatus;
 
 /**
  * Service layer for managing ChangeLog operations.
@@ -15,27 +25,91 @@ public class ChangeLogService {
     @Inject
     private ChangeLogDao changeLogDao;
 
+    @Context
+    ContainerRequestContext requestContext;
+
+    /**
+     * Writes one page of change logs as JSON while they are read from the database, in the form
+     * {@code {"changeLogs": [...], "nextAfterId": n}}. {@code nextAfterId} is the cursor of the
+     * next page, or null on the last one.
+     *
+     * @param orderOwner  The order owner whose change logs are listed, or null for all of them.
+     * @param orderId     Only list the change logs of this order, or null for all orders.
+     * @param since       Only list change logs modified at or after this time, or null for all.
+     * @param afterId     Only list change logs older than this change ID, null for the newest.
+     * @param limit       The page size.
+     * @param includeData Whether to include the initial and changed values of each log.
+     * @return The page of {@link ChangeLog} entries, newest first, each telling whether the
+     * current user has read it.
+     */
+    public StreamingOutput streamChangeLogs(String orderOwner, Integer orderId, Timestamp since,
+                                            Integer afterId, int limit, boolean includeData) {
+        System.out.println("Service: Streaming changelogs for order owner: " + orderOwner);
+        String username = (String) requestContext.getProperty("username");
+        return output -> {
+            try (JsonGenerator generator = JsonStreams.open(output)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("changeLogs");
+                KeysetPageWriter<ChangeLog> page =
+                        new KeysetPageWriter<>(generator, limit, ChangeLog::getChangeId);
+                // one extra row tells whether there is a next page without counting
+                changeLogDao.streamChangeLogs(orderOwner, username, orderId, since, afterId,
+                                              limit + 1, includeData, page);
+                generator.writeEndArray();
+                generator.writeObjectField("nextAfterId", page.nextAfterId());
+                generator.writeEndObject();
+            } catch (SQLException e) {
+                System.err.println("Service Error streaming changelogs: " + e.getMessage());
+                throw new InternalServerErrorException();
+            }
+        };
+    }
+
     /**
-     * Retrieves all change logs from the database.
-     * This method is typically used for an administrative view.
+     * Exports change logs as CSV, writing each entry as soon as it is read from the database.
+     * The changed values are embedded as JSON.
      *
-     * @return A list of {@link ChangeLog} objects representing all change log entries.
+     * @param orderOwner The order owner whose change logs are exported, or null for all of them.
+     * @return The CSV file, written to the response when it is sent.
      */
-    public List<ChangeLog> getAllChangeLogs() {
-        System.out.println("Service: Getting all changelogs.");
-        return changeLogDao.getAllChangeLogs();
+    public StreamingOutput exportChangeLogsCsv(String orderOwner) {
+        System.out.println("Service: Exporting changelogs for order owner: " + orderOwner);
+        return output -> {
+            CsvWriter csv = new CsvWriter(output);
+            csv.writeHeader("Change ID", "Order ID", "Modified At", "Change Status",
+                            "Modified By", "Order Owner", "Fields Changed", "Data Initial",
+                            "Data Changed");
+            try {
+                changeLogDao.streamChangeLogs(orderOwner, null, log -> csv.writeRow(
+                        log.getChangeId(), log.getOrderId(), log.getModifiedAt(),
+                        log.getChangeStatus().stream().map(ChangeStatus::getDbValue)
+                                .collect(Collectors.joining(";")),
+                        log.getModifiedBy(), log.getOrderOwner(),
+                        String.join(";", log.getTypeChanged()),
+                        JsonStreams.write(log.getDataInitial()),
+                        JsonStreams.write(log.getDataChanged())));
+            } catch (SQLException e) {
+                System.err.println("Service Error exporting changelogs: " + e.getMessage());
+                throw new InternalServerErrorException();
+            }
+            csv.flush();
+        };
     }
 
     /**
-     * Retrieves change logs for a specific order owner.
-     * This method enforces user-specific visibility based on the order owner.
+     * Counts the change logs the current user has not read yet.
      *
-     * @param orderOwner The ID of the order owner (e.g., company name or user ID) whose change logs are to be retrieved.
-     * @return A list of {@link ChangeLog} entries associated with the given order owner.
+     * @param orderOwner The order owner whose change logs are counted, or null for all of them.
+     * @return The number of unread change logs.
      */
-    public List<ChangeLog> getChangeLogsByOrderOwner(String orderOwner) {
-        System.out.println("Service: Getting changelogs for order owner: " + orderOwner);
-        return changeLogDao.getChangeLogsByOrderOwner(orderOwner);
+    public int getUnreadCount(String orderOwner) {
+        String username = (String) requestContext.getProperty("username");
+        try {
+            return changeLogDao.countUnread(orderOwner, username);
+        } catch (SQLException e) {
+            System.err.println("Service Error counting unread changelogs: " + e.getMessage());
+            throw new InternalServerErrorException();
+        }
     }
 
     /**
@@ -0,0 +1,33 @@
+package org.saved4.saved4.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import org.saved4.saved4.dto.Message;
+import org.saved4.saved4.dto.chat.Chat;
+import org.saved4.saved4.enums.Role;
+
+/**
+ * Open Server-Sent Events streams of the chat, so new messages reach the other side as soon as
+ * they are stored instead of on the next poll.
+ * <p>
+ * Admins receive the events of every chat, a company only those of its own chat. A
+ * {@code message} event carries the new {@link Message}, a {@code chat} event the chat overview
+ * with its last message and unread count.
+ */
+@ApplicationScoped
+public class ChatEvents {
+    private final EventStreams streams = new EventStreams();
+
+    public void subscribe(Sse sse, SseEventSink sink, Role role, String username) {
+        streams.subscribe(sse, sink, role, username);
+    }
+
+    public void publishMessage(Message message) {
+        streams.publish(message.getCompany(), "message", Message.class, message);
+    }
+
+    public void publishChat(Chat chat) {
+        streams.publish(chat.getCompany(), "chat", Chat.class, chat);
+    }
+}
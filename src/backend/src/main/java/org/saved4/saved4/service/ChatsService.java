@@ -7,6 +7,8 @@ import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.UriInfo;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
 import org.saved4.saved4.dao.ChatDao;
 import org.saved4.saved4.dto.chat.AdminChat;
 import org.saved4.saved4.dto.chat.Chat;
@@ -22,6 +24,8 @@ import java.util.List;
 public class ChatsService {
     @Inject
     private ChatDao chatDao;
+    @Inject
+    private ChatEvents chatEvents;
 
     @Context
     private ContainerRequestContext requestContext;
@@ -43,6 +47,15 @@ public class ChatsService {
                 .build();
     }
 
+    /**
+     * Registers an event stream for the chats the user can see: every chat for admins, their own
+     * chat for companies.
+     */
+    public void subscribe(Sse sse, SseEventSink eventSink) {
+        chatEvents.subscribe(sse, eventSink, (Role) requestContext.getProperty("db_role"),
+                             (String) requestContext.getProperty("username"));
+    }
+
     public Chat getChatByCompany(String company) {
         try {
             Chat chat = chatDao.getByCompany((Role) requestContext.getProperty("db_role"), company, (String) requestContext.getProperty("username"));
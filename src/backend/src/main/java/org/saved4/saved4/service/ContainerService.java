@@ -15,11 +15,14 @@ import org.saved4.saved4.dao.ContainerDao;
 import org.saved4.saved4.dto.Container;
 import org.saved4.saved4.enums.Role;
 import org.saved4.saved4.exceptions.ConflictException;
+import org.saved4.saved4.scheduler.ContainerAllocator;
 
 @RequestScoped
 public class ContainerService {
     @Inject
     private ContainerDao containerDao;
+    @Inject
+    private ContainerAllocator containerAllocator;
     @Context
     ContainerRequestContext requestContext;
     @Context
@@ -73,6 +76,7 @@ public class ContainerService {
             }
             throw new InternalServerErrorException();
         }
+        containerAllocator.reload();
         return uriInfo.getAbsolutePathBuilder().path(Long.toString(newContainerId)).build();
     }
 
@@ -82,6 +86,7 @@ public class ContainerService {
                                      container)) {
                 throw new NotFoundException();
             }
+            containerAllocator.reload();
         } catch (SQLException e) {
             throw new InternalServerErrorException();
         }
@@ -92,6 +97,7 @@ public class ContainerService {
             if (!containerDao.delete((Role) requestContext.getProperty("db_role"), containerId)) {
                 throw new NotFoundException();
             }
+            containerAllocator.reload();
         } catch (SQLException e) {
             throw new InternalServerErrorException();
         }
@@ -0,0 +1,82 @@
+package org.saved4.saved4.service;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes CSV rows straight to a response stream through a UTF-8 buffer, so exports start
+ * sending right away and never hold more than the buffer in memory.
+ * <p>
+ * Fields containing a comma, quote or line break are quoted as in RFC 4180. The underlying
+ * stream is flushed but not closed, that is left to the container.
+ */
+final class CsvWriter implements Flushable {
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Writer writer;
+
+    CsvWriter(OutputStream output) {
+        writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8),
+                                    BUFFER_SIZE);
+    }
+
+    /**
+     * Writes the header row and flushes it, so the client sees the download start before the
+     * first database rows arrive.
+     */
+    void writeHeader(String... headers) throws IOException {
+        writeRow((Object[]) headers);
+        flush();
+    }
+
+    /**
+     * Appends a row. Null values are written as empty fields.
+     */
+    void writeRow(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            if (values[i] != null) {
+                writeField(values[i].toString());
+            }
+        }
+        writer.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void writeField(String value) throws IOException {
+        if (!needsQuotes(value)) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,113 @@
+package org.saved4.saved4.service;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.saved4.saved4.enums.Role;
+
+/**
+ * Open Server-Sent Events streams, grouped by the user they belong to. Admin streams receive the
+ * events of every user, the streams of any other user only their own. A stream is dropped once
+ * the client disconnected and the next send to it fails. Thread-safe.
+ */
+final class EventStreams {
+    private final Set<SseEventSink> adminSinks = ConcurrentHashMap.newKeySet();
+    private final Map<String, Set<SseEventSink>> userSinks = new ConcurrentHashMap<>();
+    private volatile Sse sse;
+
+    void subscribe(Sse sse, SseEventSink sink, Role role, String username) {
+        this.sse = sse;
+        if (role == Role.ADMIN) {
+            adminSinks.add(sink);
+        } else {
+            userSinks.computeIfAbsent(username, user -> ConcurrentHashMap.newKeySet()).add(sink);
+        }
+        // lets the client know the stream is open before the first event
+        sink.send(sse.newEventBuilder().comment("connected").build());
+    }
+
+    /**
+     * Returns whether any admin stream is open, so callers can skip preparing events nobody
+     * receives.
+     */
+    boolean isWatchedByAdmins() {
+        return !adminSinks.isEmpty();
+    }
+
+    /**
+     * Returns whether any stream of the user is open.
+     */
+    boolean isWatchedByUser(String username) {
+        Set<SseEventSink> sinks = userSinks.get(username);
+        return sinks != null && !sinks.isEmpty();
+    }
+
+    /**
+     * Sends a JSON event to the streams of the user and of all admins.
+     */
+    void publish(String username, String name, Class<?> type, Object data) {
+        OutboundSseEvent event = event(name, type, data);
+        if (event != null) {
+            send(adminSinks, event);
+            sendToUser(username, event);
+        }
+    }
+
+    /**
+     * Sends a JSON event to the streams of the user only.
+     */
+    void publishToUser(String username, String name, Class<?> type, Object data) {
+        OutboundSseEvent event = event(name, type, data);
+        if (event != null) {
+            sendToUser(username, event);
+        }
+    }
+
+    /**
+     * Sends a JSON event to the streams of all admins only.
+     */
+    void publishToAdmins(String name, Class<?> type, Object data) {
+        OutboundSseEvent event = event(name, type, data);
+        if (event != null) {
+            send(adminSinks, event);
+        }
+    }
+
+    private OutboundSseEvent event(String name, Class<?> type, Object data) {
+        Sse sse = this.sse;
+        if (sse == null) {
+            return null; // nobody ever subscribed
+        }
+        return sse.newEventBuilder()
+                .name(name)
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(type, data)
+                .build();
+    }
+
+    private void sendToUser(String username, OutboundSseEvent event) {
+        Set<SseEventSink> sinks = userSinks.get(username);
+        if (sinks != null) {
+            send(sinks, event);
+        }
+    }
+
+    private static void send(Set<SseEventSink> sinks, OutboundSseEvent event) {
+        for (SseEventSink sink : sinks) {
+            if (sink.isClosed()) {
+                sinks.remove(sink);
+                continue;
+            }
+            sink.send(event).whenComplete((result, error) -> {
+                if (error != null) {
+                    sinks.remove(sink);
+                    sink.close();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package org.saved4.saved4.service;
+
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+
+/**
+ * Compares two instances of a DTO field by field for the change log, through a fixed table of
+ * getters built once per type instead of reflection on every call.
+ * <p>
+ * Timestamps are compared by instant and formatted as {@code yyyy-MM-dd HH:mm:ssX} in the system
+ * zone, numbers are compared by value regardless of scale, and everything else with
+ * {@code equals} and formatted with {@code toString}. Fields are reported in the order they were
+ * added to the builder. Instances are immutable and thread-safe.
+ *
+ * @param <T> the type of the compared objects
+ */
+final class FieldDiffer<T> {
+    private static final DateTimeFormatter TIMESTAMP_FORMATTER =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssX").withZone(ZoneId.systemDefault());
+
+    private final List<Accessor<T>> accessors;
+
+    private FieldDiffer(List<Accessor<T>> accessors) {
+        this.accessors = accessors;
+    }
+
+    static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Returns the fields whose value differs between the two objects, with their formatted old
+     * and new values.
+     */
+    Changes diff(T original, T updated) {
+        Changes changes = new Changes();
+        for (Accessor<T> accessor : accessors) {
+            Object originalVal = accessor.getter.apply(original);
+            Object updatedVal = accessor.getter.apply(updated);
+            if (originalVal == null && updatedVal == null) {
+                continue;
+            }
+            if (originalVal == null || updatedVal == null ||
+                    !accessor.equal.test(originalVal, updatedVal)) {
+                changes.add(accessor.name,
+                            originalVal == null ? null : accessor.format.apply(originalVal),
+                            updatedVal == null ? null : accessor.format.apply(updatedVal));
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Collects the getters of the compared fields.
+     */
+    static final class Builder<T> {
+        private final List<Accessor<T>> accessors = new ArrayList<>();
+
+        Builder<T> timestamp(String name, Function<T, Timestamp> getter) {
+            return add(name, getter,
+                       (a, b) -> ((Timestamp) a).getTime() == ((Timestamp) b).getTime(),
+                       value -> TIMESTAMP_FORMATTER.format(((Timestamp) value).toInstant()));
+        }
+
+        Builder<T> number(String name, Function<T, ? extends Number> getter) {
+            return add(name, getter,
+                       (a, b) -> ((Number) a).doubleValue() == ((Number) b).doubleValue(),
+                       Object::toString);
+        }
+
+        /**
+         * Adds a field compared with {@code equals}, such as a string, boolean or enum.
+         */
+        Builder<T> value(String name, Function<T, ?> getter) {
+            return add(name, getter, Object::equals, Object::toString);
+        }
+
+        FieldDiffer<T> build() {
+            return new FieldDiffer<>(List.copyOf(accessors));
+        }
+
+        private Builder<T> add(String name, Function<T, ?> getter,
+                               BiPredicate<Object, Object> equal, Function<Object, String> format) {
+            accessors.add(new Accessor<>(name, getter, equal, format));
+            return this;
+        }
+    }
+
+    /**
+     * The changed fields of one comparison, in the shape of the change log columns.
+     */
+    static final class Changes {
+        private final List<String> changedFields = new ArrayList<>();
+        private final Map<String, Object> dataInitial = new LinkedHashMap<>();
+        private final Map<String, Object> dataChanged = new LinkedHashMap<>();
+
+        private void add(String field, String initial, String changed) {
+            changedFields.add(field);
+            dataInitial.put(field, initial);
+            dataChanged.put(field, changed);
+        }
+
+        boolean isEmpty() {
+            return changedFields.isEmpty();
+        }
+
+        List<String> getChangedFields() {
+            return Collections.unmodifiableList(changedFields);
+        }
+
+        Map<String, Object> getDataInitial() {
+            return Collections.unmodifiableMap(dataInitial);
+        }
+
+        Map<String, Object> getDataChanged() {
+            return Collections.unmodifiableMap(dataChanged);
+        }
+    }
+
+    private static final class Accessor<T> {
+        private final String name;
+        private final Function<T, ?> getter;
+        private final BiPredicate<Object, Object> equal;
+        private final Function<Object, String> format;
+
+        private Accessor(String name, Function<T, ?> getter, BiPredicate<Object, Object> equal,
+                         Function<Object, String> format) {
+            this.name = name;
+            this.getter = getter;
+            this.equal = equal;
+            this.format = format;
+        }
+    }
+}
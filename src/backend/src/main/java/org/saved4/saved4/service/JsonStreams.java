@@ -0,0 +1,34 @@
+package org.saved4.saved4.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Shared setup for responses that write JSON straight to the output stream instead of handing
+ * a collection to Jersey.
+ */
+final class JsonStreams {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private JsonStreams() {
+    }
+
+    /**
+     * Opens a generator on the response stream. Closing the generator flushes it but leaves the
+     * stream itself to the container.
+     */
+    static JsonGenerator open(OutputStream output) throws IOException {
+        JsonGenerator generator = MAPPER.getFactory().createGenerator(output);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return generator;
+    }
+
+    /**
+     * Serializes a single value, e.g. to embed it in a CSV field.
+     */
+    static String write(Object value) throws IOException {
+        return MAPPER.writeValueAsString(value);
+    }
+}
@@ -6,8 +6,10 @@ import jakarta.ws.rs.InternalServerErrorException;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.UriInfo;
+import org.saved4.saved4.dao.ChatDao;
 import org.saved4.saved4.dao.MessageDao;
 import org.saved4.saved4.dto.Message;
+import org.saved4.saved4.dto.chat.Chat;
 import org.saved4.saved4.enums.Role;
 import org.saved4.saved4.exceptions.ConflictException;
 
@@ -20,6 +22,10 @@ import java.util.List;
 public class MessagesService {
     @Inject
     MessageDao messageDao;
+    @Inject
+    ChatDao chatDao;
+    @Inject
+    ChatEvents chatEvents;
 
     @Context
     ContainerRequestContext requestContext;
@@ -28,9 +34,11 @@ public class MessagesService {
 
     public URI createMessage(String company, String body) {
         Integer msgId;
+        Role role = (Role) requestContext.getProperty("db_role");
+        String username = (String) requestContext.getProperty("username");
+        Message message = new Message(company, new Timestamp(System.currentTimeMillis()), username, body);
         try {
-            msgId = messageDao.create(new Message(company, new Timestamp(System.currentTimeMillis()),
-                    (String) requestContext.getProperty("username"), body), (Role) requestContext.getProperty("db_role"));
+            msgId = messageDao.create(message, role);
         } catch (SQLException e) {
             System.out.println(e.getMessage());
             if ("23505".equals(e.getSQLState())) {
@@ -41,14 +49,33 @@ public class MessagesService {
         if (msgId == null) {
             return null;
         }
+        message.setMessageId(msgId);
+        publish(message, role, username);
         return uriInfo.getAbsolutePathBuilder()
                 .path(Long.toString(msgId))
                 .build();
     }
 
-    public List<Message> listMessages(String company) {
+    /**
+     * Pushes the committed message and the updated chat overview to the open chat streams.
+     */
+    private void publish(Message message, Role role, String username) {
+        chatEvents.publishMessage(message);
+        try {
+            Chat chat = chatDao.getByCompany(role, username, message.getCompany());
+            if (chat != null) {
+                chatEvents.publishChat(chat);
+            }
+        } catch (SQLException e) {
+            // the message is stored, clients pick up the overview on their next fetch
+            System.out.println(e.getMessage());
+        }
+    }
+
+    public List<Message> listMessages(String company, Integer afterId, Integer beforeId, int limit) {
         try {
-            return messageDao.list(company, (String) requestContext.getProperty("username"), (Role) requestContext.getProperty("db_role"));
+            return messageDao.list(company, (String) requestContext.getProperty("username"),
+                                   (Role) requestContext.getProperty("db_role"), afterId, beforeId, limit);
         } catch (SQLException e) {
             System.out.println(e.getMessage());
             throw new InternalServerErrorException();
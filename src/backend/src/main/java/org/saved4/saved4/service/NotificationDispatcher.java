@@ -0,0 +1,84 @@
+package org.saved4.saved4.service;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.context.Initialized;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background worker that delivers the notifications queued in the outbox.
+ * <p>
+ * Order writes only add a row to {@code notification_outbox} in their own transaction and call
+ * {@link #wakeUp()} once it is committed. The worker then moves the outbox into
+ * {@code notifications} in batches and pushes them to the open streams. It also polls every
+ * {@link #POLL_INTERVAL_MS}, which picks up entries left behind by a crash or a failed delivery.
+ */
+@ApplicationScoped
+public class NotificationDispatcher {
+    private static final int BATCH_SIZE = 200;
+    private static final long POLL_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+    private static final long RETRY_DELAY_MS = TimeUnit.SECONDS.toMillis(5);
+
+    @Inject
+    private NotificationService notificationService;
+
+    private final Semaphore signal = new Semaphore(0);
+    private Thread worker;
+
+    void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+        start();
+    }
+
+    /**
+     * Starts the worker thread. Calling it again has no effect.
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        worker = new Thread(this::run, "notification-dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    /**
+     * Lets the worker know that new entries were committed to the outbox.
+     */
+    public void wakeUp() {
+        signal.release();
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                signal.tryAcquire(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                signal.drainPermits();
+                // a full batch means there may be more waiting
+                while (notificationService.deliverOutbox(BATCH_SIZE) == BATCH_SIZE) {
+                    // keep draining
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (SQLException | RuntimeException e) {
+                System.err.println("[NOTIFICATIONS] Delivery failed, retrying: " + e.getMessage());
+                try {
+                    Thread.sleep(RETRY_DELAY_MS);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
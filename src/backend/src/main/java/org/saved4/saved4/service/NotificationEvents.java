@@ -0,0 +1,60 @@
+package org.saved4.saved4.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import java.util.Map;
+import org.saved4.saved4.dto.Notification;
+import org.saved4.saved4.enums.Role;
+
+/**
+ * Open Server-Sent Events streams of notifications, so clients see changes without refetching
+ * the whole list.
+ * <p>
+ * Admins receive the events of every receiver, any other user only their own. The events are
+ * {@code notification} with a new {@link Notification}, {@code read} with
+ * {@code notificationId} and {@code read} when it was marked read or unread, {@code deleted}
+ * with {@code notificationId}, and {@code unread-count} with {@code receiver} and {@code unread}
+ * after each of them. Admins show the unread count of all receivers, so their
+ * {@code unread-count} events also carry that {@code total}.
+ */
+@ApplicationScoped
+public class NotificationEvents {
+    private final EventStreams streams = new EventStreams();
+
+    public void subscribe(Sse sse, SseEventSink sink, Role role, String username) {
+        streams.subscribe(sse, sink, role, username);
+    }
+
+    public boolean isWatchedByAdmins() {
+        return streams.isWatchedByAdmins();
+    }
+
+    public boolean isWatchedByReceiver(String receiver) {
+        return streams.isWatchedByUser(receiver);
+    }
+
+    public void publishCreated(Notification notification) {
+        streams.publish(notification.getReceiver(), "notification", Notification.class,
+                        notification);
+    }
+
+    public void publishRead(String receiver, int notificationId, boolean read) {
+        streams.publish(receiver, "read", Map.class,
+                        Map.of("notificationId", notificationId, "read", read));
+    }
+
+    public void publishDeleted(String receiver, int notificationId) {
+        streams.publish(receiver, "deleted", Map.class, Map.of("notificationId", notificationId));
+    }
+
+    public void publishUnreadCount(String receiver, int unread) {
+        streams.publishToUser(receiver, "unread-count", Map.class,
+                              Map.of("receiver", receiver, "unread", unread));
+    }
+
+    public void publishAdminUnreadCount(String receiver, int unread, int total) {
+        streams.publishToAdmins("unread-count", Map.class,
+                                Map.of("receiver", receiver, "unread", unread, "total", total));
+    }
+}
@@ -4,14 +4,17 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.core.Context;
-import java.sql.Timestamp;
-import java.time.LocalDateTime;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+import java.sql.SQLException;
 import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import org.saved4.saved4.dao.NotificationDao;
 import org.saved4.saved4.dto.Notification;
-import org.saved4.saved4.enums.NotificationType;
 import org.saved4.saved4.enums.Role;
 
 /**
@@ -20,10 +23,16 @@ import org.saved4.saved4.enums.Role;
  */
 @ApplicationScoped
 public class NotificationService {
+    private static final Role OUTBOX_ROLE = Role.ADMIN;
+    private static final DateTimeFormatter TIME_FORMATTER =
+            DateTimeFormatter.ofPattern("d MMMM yyyy, HH:mm").withLocale(Locale.ENGLISH);
 
     @Inject
     private NotificationDao notificationDao;
 
+    @Inject
+    private NotificationEvents notificationEvents;
+
     @Context
     ContainerRequestContext requestContext;
 
@@ -38,93 +47,28 @@ public class NotificationService {
         return notificationDao.getAllNotifications(role, recipient);
     }
 
-
-    /**
-     * Creates a notification for a newly placed order.
-     *
-     * @param receiver the username or identifier of the notification recipient
-     * @param orderId  the ID of the newly placed order
-     */
-    public void createNewOrderNotification(String receiver, int orderId) {
-        Notification notification = new Notification();
-        notification.setReceiver(receiver);
-        notification.setOrderId(orderId);
-        notification.setTitle("CREATED - Order #" + notification.getOrderId());
-        notification.setType(NotificationType.ORDER_CREATION);
-        notification.setMessageId(null); // not a message
-        notification.setData(
-                "New order #" + notification.getOrderId() + " for " + notification.getReceiver() +
-                        " has been placed.");
-        notification.setRead(false);
-        notification.setTimestamp(new Timestamp(System.currentTimeMillis()));
-
-        Role role = (Role) requestContext.getProperty("db_role");
-        notificationDao.insertNotification(role, notification);
-    }
-
-
     /**
-     * Creates a notification for an updated order.
+     * Counts the unread notifications of a recipient. Companies always get their own count, admins
+     * that of the given recipient, or of all notifications if there is none.
      *
-     * @param receiver   the username or identifier of the notification recipient
-     * @param orderId    the ID of the order that was updated
-     * @param modifiedAt the timestamp indicating when the order was modified
+     * @param recipient the username of the notification recipient, ignored for companies
+     * @return the number of unread notifications
      */
-    public void createUpdateOrderNotification(String receiver, int orderId,
-                                              LocalDateTime modifiedAt) {
-        Notification notification = new Notification();
-        notification.setReceiver(receiver);
-        notification.setOrderId(orderId);
-        notification.setTitle("UPDATED - Order #" + notification.getOrderId());
-        notification.setType(NotificationType.ORDER_UPDATE);
-        notification.setRead(false);
-        notification.setTimestamp(new Timestamp(System.currentTimeMillis()));
-        DateTimeFormatter formatter =
-                DateTimeFormatter.ofPattern("d MMMM yyyy, HH:mm").withLocale(Locale.ENGLISH);
-        String formattedDate = modifiedAt.format(formatter);
-
-        StringBuilder details = new StringBuilder();
-        details.append("Order #").append(orderId).append(" has been updated.");
-
-        details.append("\nModified at: ").append(formattedDate).append(".");
-        details.append("\nSee changelog in orders page for details.");
-
-        notification.setData(details.toString());
-
+    public int getUnreadCount(String recipient) {
         Role role = (Role) requestContext.getProperty("db_role");
-        notificationDao.insertNotification(role, notification);
+        if (role != Role.ADMIN) {
+            recipient = (String) requestContext.getProperty("username");
+        }
+        return notificationDao.countUnread(role, recipient);
     }
 
     /**
-     * Creates a notification for a deleted order.
-     *
-     * @param receiver  the username or identifier of the notification recipient
-     * @param orderId   the ID of the deleted order
-     * @param deletedAt the timestamp indicating when the order was deleted
+     * Registers the event sink of the current user for notification events.
      */
-    public void createDeleteOrderNotification(String receiver, int orderId,
-                                              LocalDateTime deletedAt) {
-        Notification notification = new Notification();
-        notification.setReceiver(receiver);
-        notification.setOrderId(orderId);
-        notification.setTitle("DELETED - Order #" + notification.getOrderId());
-        notification.setType(NotificationType.ORDER_DELETION);
-        notification.setRead(false);
-        notification.setTimestamp(new Timestamp(System.currentTimeMillis()));
-        DateTimeFormatter formatter =
-                DateTimeFormatter.ofPattern("d MMMM yyyy, HH:mm").withLocale(Locale.ENGLISH);
-        String formattedDate = deletedAt.format(formatter);
-
-        StringBuilder details = new StringBuilder();
-        details.append("Order #").append(orderId).append(" has been deleted.");
-
-        details.append("\nDeleted at: ").append(formattedDate).append(".");
-        details.append("\nYou can no longer access this order's details.");
-
-        notification.setData(details.toString());
-
+    public void subscribe(Sse sse, SseEventSink eventSink) {
         Role role = (Role) requestContext.getProperty("db_role");
-        notificationDao.insertNotification(role, notification);
+        String username = (String) requestContext.getProperty("username");
+        notificationEvents.subscribe(sse, eventSink, role, username);
     }
 
 
@@ -140,8 +84,13 @@ public class NotificationService {
                 "SERVICE: Setting read status of notification ID: " + notificationId + " to " +
                         read);
         Role role = (Role) requestContext.getProperty("db_role");
-        boolean result = notificationDao.setReadStatus(role, notificationId, read);
+        String receiver = notificationDao.setReadStatus(role, notificationId, read);
+        boolean result = receiver != null;
         System.out.println("SERVICE: Read status update success: " + result);
+        if (result) {
+            notificationEvents.publishRead(receiver, notificationId, read);
+            publishUnreadCount(role, receiver);
+        }
         return result;
     }
 
@@ -155,8 +104,92 @@ public class NotificationService {
     public boolean deleteNotification(int notificationId) {
         System.out.println("SERVICE: Deleting notification ID: " + notificationId);
         Role role = (Role) requestContext.getProperty("db_role");
-        boolean result = notificationDao.deleteNotification(role, notificationId);
+        String receiver = notificationDao.deleteNotification(role, notificationId);
+        boolean result = receiver != null;
         System.out.println("SERVICE: Deletion success: " + result);
+        if (result) {
+            notificationEvents.publishDeleted(receiver, notificationId);
+            publishUnreadCount(role, receiver);
+        }
         return result;
     }
+
+    /**
+     * Moves the next batch of the outbox into notifications and pushes them to their receivers.
+     * Called by the {@link NotificationDispatcher}, outside any HTTP request.
+     *
+     * @param limit the maximum number of notifications to deliver
+     * @return the number of delivered notifications
+     */
+    public int deliverOutbox(int limit) throws SQLException {
+        List<Notification> delivered = notificationDao.deliverOutbox(OUTBOX_ROLE, limit,
+                                                                     this::describe);
+        Set<String> receivers = new LinkedHashSet<>();
+        for (Notification notification : delivered) {
+            notificationEvents.publishCreated(notification);
+            receivers.add(notification.getReceiver());
+        }
+        publishUnreadCounts(OUTBOX_ROLE, receivers);
+        return delivered.size();
+    }
+
+    /**
+     * Fills in the title and text of an order notification from its type, order and timestamp.
+     */
+    private void describe(Notification notification) {
+        int orderId = notification.getOrderId();
+        switch (notification.getType()) {
+            case ORDER_CREATION:
+                notification.setTitle("CREATED - Order #" + orderId);
+                notification.setData("New order #" + orderId + " for " +
+                                             notification.getReceiver() + " has been placed.");
+                break;
+            case ORDER_UPDATE:
+                notification.setTitle("UPDATED - Order #" + orderId);
+                notification.setData("Order #" + orderId + " has been updated." +
+                                             "\nModified at: " + formatTime(notification) + "." +
+                                             "\nSee changelog in orders page for details.");
+                break;
+            case ORDER_DELETION:
+                notification.setTitle("DELETED - Order #" + orderId);
+                notification.setData("Order #" + orderId + " has been deleted." +
+                                             "\nDeleted at: " + formatTime(notification) + "." +
+                                             "\nYou can no longer access this order's details.");
+                break;
+            default:
+                System.err.println("No description for notification type: " +
+                                           notification.getType());
+                break;
+        }
+    }
+
+    private static String formatTime(Notification notification) {
+        return notification.getTimestamp().toLocalDateTime().format(TIME_FORMATTER);
+    }
+
+    private void publishUnreadCount(Role role, String receiver) {
+        publishUnreadCounts(role, List.of(receiver));
+    }
+
+    /**
+     * Sends the new unread counts of the receivers, skipping the queries no stream would get.
+     * The total for admins is counted once here rather than by every admin client.
+     */
+    private void publishUnreadCounts(Role role, Collection<String> receivers) {
+        boolean admins = notificationEvents.isWatchedByAdmins();
+        int total = admins ? notificationDao.countUnread(OUTBOX_ROLE, null) : 0;
+        for (String receiver : receivers) {
+            boolean watched = notificationEvents.isWatchedByReceiver(receiver);
+            if (!admins && !watched) {
+                continue;
+            }
+            int unread = notificationDao.countUnread(role, receiver);
+            if (watched) {
+                notificationEvents.publishUnreadCount(receiver, unread);
+            }
+            if (admins) {
+                notificationEvents.publishAdminUnreadCount(receiver, unread, total);
+            }
+        }
+    }
 }
@@ -1,27 +1,31 @@
 package org.saved4.saved4.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.InternalServerErrorException;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.core.Context;
-import java.lang.reflect.Field;
+import jakarta.ws.rs.core.StreamingOutput;
 import java.sql.SQLException;
 import java.sql.Timestamp;
-import java.time.Instant;
-import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
 import org.postgresql.geometric.PGpoint;
-import org.saved4.saved4.dao.ChangeLogDao;
-import org.saved4.saved4.dao.CompanyDao;
+import org.saved4.saved4.dao.ChangeLogWriter;
+import org.saved4.saved4.dao.ContainerDao;
+import org.saved4.saved4.dao.KeysetPageWriter;
 import org.saved4.saved4.dao.OrderDao;
+import org.saved4.saved4.dao.UnitOfWork;
+import org.saved4.saved4.dao.VehicleDAO;
 import org.saved4.saved4.dto.*;
 import org.saved4.saved4.enums.ContainerStatus;
+import org.saved4.saved4.enums.NotificationType;
 import org.saved4.saved4.enums.OrderStatus;
 import org.saved4.saved4.enums.Role;
 import org.saved4.saved4.enums.VehicleStatus;
+import org.saved4.saved4.scheduler.ContainerAllocator;
+import org.saved4.saved4.scheduler.OrderAssignmentScheduler;
+import org.saved4.saved4.scheduler.VehicleAvailabilityIndex;
 //import java.util.function.BiConsumer;
 
 @RequestScoped
@@ -29,21 +33,48 @@ public class OrderService {
     @Inject
     private OrderDao orderDao;
     @Inject
-    private AssignmentService assignmentService;
+    private VehicleDAO vehicleDAO;
     @Inject
-    private VehicleService vehicleService;
+    private ContainerDao containerDao;
     @Inject
-    private ContainerService containerService;
+    private ChangeLogWriter changeLogWriter;
     @Inject
-    private NotificationService notificationService;
+    private NotificationDispatcher notificationDispatcher;
+    @Inject
+    private OrderAssignmentScheduler orderAssignmentScheduler;
+    @Inject
+    private VehicleAvailabilityIndex vehicleAvailabilityIndex;
+    @Inject
+    private ContainerAllocator containerAllocator;
 
     @Context
     ContainerRequestContext requestContext;
-    @Inject
-    private CompanyDao companyDao;
 
     public static final PGpoint PORT = new PGpoint(4.4338, 51.9515);
 
+    // the order fields tracked in the change log, in the order they are reported
+    private static final FieldDiffer<Order> ORDER_DIFFER = FieldDiffer.<Order>builder()
+            .number("containerId", Order::getContainerId)
+            .number("vehicleId", Order::getVehicleId)
+            .value("requester", Order::getRequester)
+            .value("order_for", Order::getOrder_for)
+            .number("routeId", Order::getRouteId)
+            .timestamp("madeAt", Order::getMadeAt)
+            .value("source", Order::getSource)
+            .value("destination", Order::getDestination)
+            .value("preferredShared", Order::getPreferredShared)
+            .value("isShared", Order::getShared)
+            .timestamp("twStart", Order::getTwStart)
+            .timestamp("twEnd", Order::getTwEnd)
+            .timestamp("eta", Order::getEta)
+            .value("status", Order::getStatus)
+            .value("operationType", Order::getOperationType)
+            .number("freightValue", Order::getFreightValue)
+            .number("freightWeight", Order::getFreightWeight)
+            .value("freightType", Order::getFreightType)
+            .timestamp("departureTime", Order::getDepartureTime)
+            .build();
+
     /**
      * Retrieves a list of all orders from the database.
      *
@@ -81,16 +112,13 @@ public class OrderService {
         String dbRequester = (String) requestContext.getProperty("username");
         System.out.println("adding new order");
 
-        Order createdOrder = orderDao.insertOrderDB(role, dbRequester, order);
+        Order createdOrder = orderDao.insertOrderDB(role, dbRequester, order,
+                                                    NotificationType.ORDER_CREATION);
         System.out.println("Add new order service");
 
         if (createdOrder != null) {
-            try {
-                triggerOrderNotification(createdOrder, "create", null);
-            } catch (Exception e) {
-                System.err.println("Notification creation failed: " + e.getMessage());
-                e.printStackTrace();
-            }
+            orderChanged(createdOrder);
+            notificationDispatcher.wakeUp();
         }
         return createdOrder;
     }
@@ -109,41 +137,47 @@ public class OrderService {
     public Order updateOrder(int id, Order updatedOrder) {
         Role role = (Role) requestContext.getProperty("db_role");
         String dbRequester = (String) requestContext.getProperty("username");
-        ChangeLogDao changeLogDao = new ChangeLogDao();
-        Order originalOrder = orderDao.getOrderByIdDB(role, dbRequester, id, null);
-
-        if (originalOrder == null) {
-            throw new RuntimeException("Order not found with id " + id);
-        }
-
-        Map<String, Object> dataInitial = new HashMap<>();
-        Map<String, Object> dataChanged = new HashMap<>();
-        List<String> changedFields =
-                new ArrayList<>(); // Use List to maintain order if desired, or Set for uniqueness
-
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssX");
-        ZoneId systemZone = ZoneId.systemDefault();
+        return updateOrder(role, dbRequester, id, updatedOrder);
+    }
 
-        for (Field field : Order.class.getDeclaredFields()) {
-            if (field.getName().equals("orderId") || field.getName().equals("sourcePosition") ||
-                    field.getName().equals("destinationPosition")) {
-                continue;
+    /**
+     * Updates an existing order on behalf of the given role and requester. Used by the
+     * background scheduler, which runs outside an HTTP request.
+     *
+     * @see #updateOrder(int, Order)
+     */
+    public Order updateOrder(Role role, String dbRequester, int id, Order updatedOrder) {
+        try (UnitOfWork work = new UnitOfWork(role, dbRequester)) {
+            Order savedOrder = updateOrder(work, id, updatedOrder);
+            if (savedOrder != null) {
+                work.commit();
             }
+            return savedOrder;
+        } catch (SQLException e) {
+            System.err.println("Error updating order " + id + ": " + e.getMessage());
+            return null;
+        }
+    }
 
-            field.setAccessible(true);
-
-            try {
-                Object originalVal = field.get(originalOrder);
-                Object updatedVal = field.get(updatedOrder);
+    /**
+     * Updates an existing order inside the given unit of work. The order is read and locked on
+     * the same connection, and the change log entry, the scheduling state and the notification
+     * are only handed on once the unit of work commits.
+     *
+     * @see #updateOrder(Role, String, int, Order)
+     */
+    Order updateOrder(UnitOfWork work, int id, Order updatedOrder) throws SQLException {
+        Order originalOrder = orderDao.getOrderByIdDB(work, id);
 
-                processFieldChange(field.getName(), originalVal, updatedVal, dataInitial,
-                                   dataChanged, changedFields, formatter, systemZone);
-            } catch (IllegalAccessException e) {
-                System.err.println(
-                        "Error accessing field " + field.getName() + " using reflection: " +
-                                e.getMessage());
-            }
+        if (originalOrder == null) {
+            throw new RuntimeException("Order not found with id " + id);
         }
+        NotificationType notify = null;
+
+        FieldDiffer.Changes changes = ORDER_DIFFER.diff(originalOrder, updatedOrder);
+        List<String> changedFields = changes.getChangedFields();
+        Map<String, Object> dataInitial = changes.getDataInitial();
+        Map<String, Object> dataChanged = changes.getDataChanged();
 
         if (!changedFields.isEmpty()) {
             ChangeLog changeLog = new ChangeLog();
@@ -180,16 +214,15 @@ public class OrderService {
                         updatedOrder.setVehicleId(null);
 
                         if (updatedOrder.getShared()) {
+                            // on the same connection, which holds the lock on this order
                             List<Order> listOrder =
-                                    getFilteredOrders(null, null, null, null, null, null, null,
-                                                      null, null, null, null,
-                                                      updatedOrder.getRouteId());
+                                    orderDao.getOrdersByRoute(work, updatedOrder.getRouteId());
                             for (Order order : listOrder) {
                                 if (order.getOrderId() != updatedOrder.getOrderId()) {
                                     order.setShared(false);
 
-                                    orderDao.updateOrderDB(role, dbRequester, order.getOrderId(),
-                                                           order);
+                                    orderDao.updateOrderDB(work, order.getOrderId(), order,
+                                                           null);
                                 }
                             }
                         }
@@ -223,106 +256,34 @@ public class OrderService {
             changeLog.setChangeStatus(detectedStatuses);
             // --- END NEW LOGIC ---
 
-            try {
-                changeLogDao.insertChangeLog(changeLog);
-
-            } catch (Exception e) {
-                System.err.println("Failed to insert changelog: " + e.getMessage());
-                e.printStackTrace();
-            }
-            try {
-                System.out.println("[DEBUG] Changed fields: " + changedFields);
-                System.out.println("[DEBUG] Updated order status: " + updatedOrder.getStatus());
-                System.out.println("[DEBUG] Order ID: " + updatedOrder.getOrderId());
-                System.out.println("[DEBUG] Order For: " + updatedOrder.getOrder_for());
-                System.out.println("[DEBUG] Shared: " + updatedOrder.getShared());
-
-                if (updatedOrder == null) {
-                    triggerOrderNotification(updatedOrder, "deletion", LocalDateTime.now());
-                } else if (!(updatedOrder.getStatus() == OrderStatus.created)) {
-                    System.out.println("[DEBUG] Triggering update notification for order: " +
-                                               updatedOrder.getOrderId());
-                    triggerOrderNotification(updatedOrder, "update", LocalDateTime.now());
-                } else {
-                    System.out.println(
-                            "[DEBUG] Skipped update notification because status is 'created'");
-                }
-            } catch (Exception e) {
-                System.err.println("Notification creation failed: " + e.getMessage());
-                e.printStackTrace();
-            }
-        }
-
-        return orderDao.updateOrderDB(role, dbRequester, id, updatedOrder);
-    }
-
-    /**
-     * Helper method to compare two values, detect changes, and populate changelog data.
-     * Handles different data types including Timestamps, LocalDateTimes, Enums, and Numbers.
-     *
-     * @param fieldName     The name of the field being compared.
-     * @param originalVal   The original value of the field.
-     * @param updatedVal    The updated value of the field.
-     * @param dataInitial   Map to store initial values of changed fields.
-     * @param dataChanged   Map to store updated values of changed fields.
-     * @param changedFields List to store names of changed fields.
-     * @param formatter     DateTimeFormatter for date/time formatting.
-     * @param systemZone    ZoneId for date/time formatting.
-     */
-    private void processFieldChange(String fieldName, Object originalVal, Object updatedVal,
-                                    Map<String, Object> dataInitial,
-                                    Map<String, Object> dataChanged, List<String> changedFields,
-                                    DateTimeFormatter formatter, ZoneId systemZone) {
-        boolean changed = false;
-        String originalFormatted = null;
-        String updatedFormatted = null;
-
-        if (originalVal == null && updatedVal != null) {
-            changed = true;
-        } else if (originalVal != null && updatedVal == null) {
-            changed = true;
-        } else if (originalVal != null) {
-            if (originalVal instanceof Timestamp && updatedVal instanceof Timestamp) {
-                changed = ((Timestamp) originalVal).getTime() != ((Timestamp) updatedVal).getTime();
-                originalFormatted =
-                        ZonedDateTime.of(((Timestamp) originalVal).toLocalDateTime(), systemZone)
-                                .format(formatter);
-                updatedFormatted =
-                        ZonedDateTime.of(((Timestamp) updatedVal).toLocalDateTime(), systemZone)
-                                .format(formatter);
-            } else if (originalVal instanceof LocalDateTime &&
-                    updatedVal instanceof LocalDateTime) {
-                changed = !((LocalDateTime) originalVal).isEqual((LocalDateTime) updatedVal);
-                originalFormatted =
-                        ZonedDateTime.of((LocalDateTime) originalVal, systemZone).format(formatter);
-                updatedFormatted =
-                        ZonedDateTime.of((LocalDateTime) updatedVal, systemZone).format(formatter);
-            } else if (originalVal instanceof Enum && updatedVal instanceof Enum) {
-                changed = !originalVal.toString().equals(updatedVal.toString());
-                originalFormatted = originalVal.toString();
-                updatedFormatted = updatedVal.toString();
-            } else if (originalVal instanceof Number && updatedVal instanceof Number) {
-                changed =
-                        ((Number) originalVal).doubleValue() != ((Number) updatedVal).doubleValue();
-                originalFormatted = originalVal.toString();
-                updatedFormatted = updatedVal.toString();
+            // written in the background once committed, the update does not wait for its
+            // audit entry
+            work.afterCommit(() -> changeLogWriter.submit(changeLog));
+            System.out.println("[DEBUG] Changed fields: " + changedFields);
+            System.out.println("[DEBUG] Updated order status: " + updatedOrder.getStatus());
+            System.out.println("[DEBUG] Order ID: " + updatedOrder.getOrderId());
+            System.out.println("[DEBUG] Order For: " + updatedOrder.getOrder_for());
+            System.out.println("[DEBUG] Shared: " + updatedOrder.getShared());
+
+            if (!(updatedOrder.getStatus() == OrderStatus.created)) {
+                notify = NotificationType.ORDER_UPDATE;
             } else {
-                changed = !originalVal.equals(updatedVal);
-                originalFormatted = originalVal.toString();
-                updatedFormatted = updatedVal.toString();
+                System.out.println(
+                        "[DEBUG] Skipped update notification because status is 'created'");
             }
         }
 
-        if (changed) {
-            changedFields.add(fieldName);
-            dataInitial.put(fieldName, originalFormatted != null ? originalFormatted :
-                    (originalVal != null ? originalVal.toString() : null));
-            dataChanged.put(fieldName, updatedFormatted != null ? updatedFormatted :
-                    (updatedVal != null ? updatedVal.toString() : null));
+        // the notification is queued in the same transaction as the update
+        Order savedOrder = orderDao.updateOrderDB(work, id, updatedOrder, notify);
+        if (savedOrder != null) {
+            work.afterCommit(() -> orderChanged(savedOrder));
+            if (notify != null) {
+                work.afterCommit(notificationDispatcher::wakeUp);
+            }
         }
+        return savedOrder;
     }
 
-
     /**
      * Deletes an order from the database by its ID.
      *
@@ -335,20 +296,12 @@ public class OrderService {
 
         System.out.println("[DEBUG] Attempting to delete order with ID: " + id);
 
-        Order orderToDelete = getOrderById(id, null);
-        if (orderToDelete == null) {
-            System.out.println("[DEBUG] Order not found with ID: " + id);
-        } else {
-            System.out.println("[DEBUG] Order found: " + orderToDelete);
-            try {
-                triggerOrderNotification(orderToDelete, "deletion", LocalDateTime.now());
-            } catch (Exception e) {
-                System.err.println("Notification creation failed: " + e.getMessage());
-                e.printStackTrace();
-            }
+        boolean result = orderDao.removeOrderDB(role, dbRequester, id,
+                                                NotificationType.ORDER_DELETION);
+        if (result) {
+            orderRemoved(id);
+            notificationDispatcher.wakeUp();
         }
-
-        boolean result = orderDao.removeOrderDB(role, dbRequester, id);
         System.out.println("[DEBUG] Order deletion result for ID " + id + ": " + result);
         return result;
     }
@@ -370,76 +323,114 @@ public class OrderService {
      * @param operationType Filters by the type of operation (e.g., "loading", "unloading").
      * @param order_for     Filters by the recipient of the order.
      * @param is_shared     Filters orders based on whether they are shared.
-     * @return A list of order objects that match the specified filters.
+     * @param twFrom        Only orders whose time window ends at or after it, or null.
+     * @param twTo          Only orders whose time window starts before it, or null.
+     * @param afterId       Only orders with a smaller id are returned, null for the first page.
+     * @param limit         The maximum number of orders on the page.
+     * @return A page of orders that match the specified filters, newest first, written as
+     * {@code {"orders": [...], "nextAfterId": n}} while the rows are read from the database.
+     * {@code nextAfterId} is the {@code after_id} of the next page, or null on the last one.
      */
-    public List<Order> getFilteredOrders(Integer containerId, Integer vehicleId, String requester,
-                                         String startDate, String endDate, String source,
-                                         String destination, List<String> status,
-                                         String operationType, String order_for, Boolean is_shared,
-                                         Integer routeId) {
+    public StreamingOutput streamFilteredOrders(Integer containerId, Integer vehicleId,
+                                                String requester, String startDate,
+                                                String endDate, String source,
+                                                String destination, List<String> status,
+                                                String operationType, String order_for,
+                                                Boolean is_shared, Integer routeId,
+                                                Timestamp twFrom, Timestamp twTo,
+                                                Integer afterId, int limit) {
         Role role = (Role) requestContext.getProperty("db_role");
         String dbRequester = (String) requestContext.getProperty("username");
-        return orderDao.getFilteredOrders(role, dbRequester, containerId, vehicleId, requester,
-                                          startDate, endDate, source, destination, status,
-                                          operationType, order_for, is_shared, routeId);
+        return output -> {
+            try (JsonGenerator generator = JsonStreams.open(output)) {
+                generator.writeStartObject();
+                generator.writeArrayFieldStart("orders");
+                KeysetPageWriter<Order> page =
+                        new KeysetPageWriter<>(generator, limit, Order::getOrderId);
+                // one extra row tells whether there is a next page without counting
+                orderDao.streamFilteredOrders(role, dbRequester, containerId, vehicleId,
+                                              requester, startDate, endDate, source, destination,
+                                              status, operationType, order_for, is_shared,
+                                              routeId, twFrom, twTo, afterId, limit + 1,
+                                              page);
+                generator.writeEndArray();
+                generator.writeObjectField("nextAfterId", page.nextAfterId());
+                generator.writeEndObject();
+            } catch (SQLException e) {
+                System.err.println("Error streaming filtered orders: " + e.getMessage());
+                throw new InternalServerErrorException();
+            }
+        };
     }
 
 
     /**
-     * Triggers a notification based on the action type related to an order.
+     * Exports orders as CSV, writing each order as soon as it is read from the database.
      *
-     * @param order      The Order object involved in the event. May be null if the order was deleted.
-     * @param actionType The type of action performed ("create", "update", or "deletion").
-     * @param modifiedAt The timestamp at which the action occurred.
+     * @param order_for Only export orders for this user, or null for all visible orders.
+     * @return The CSV file, written to the response when it is sent.
      */
-    private void triggerOrderNotification(Order order, String actionType,
-                                          LocalDateTime modifiedAt) {
-        if (order == null) {
-            if ("deletion".equalsIgnoreCase(actionType)) {
-                System.out.println("Triggering notification: deletion");
-                // You can optionally pass the order ID separately if it's retrievable before deletion
-                return;
-            } else {
-                System.err.println(
-                        "Order is null. Cannot trigger notification for action: " + actionType);
-                return;
+    public StreamingOutput exportOrdersCsv(String order_for) {
+        Role role = (Role) requestContext.getProperty("db_role");
+        String dbRequester = (String) requestContext.getProperty("username");
+        return output -> {
+            CsvWriter csv = new CsvWriter(output);
+            csv.writeHeader("Order ID", "Container ID", "Vehicle ID", "Requested by", "Route ID",
+                            "Made At", "Source", "Destination", "Is Shared", "TW Start",
+                            "TW End", "ETA", "Status", "Operation Type", "Freight Value",
+                            "Freight Type", "Freight Weight");
+            try {
+                orderDao.streamFilteredOrders(role, dbRequester, null, null, null, null, null,
+                                              null, null, null, null, order_for, null, null, null,
+                                              null, null, null, order -> csv.writeRow(
+                                order.getOrderId(), order.getContainerId(),
+                                order.getVehicleId(), order.getRequester(), order.getRouteId(),
+                                order.getMadeAt(), order.getSource(), order.getDestination(),
+                                order.getShared(), order.getTwStart(), order.getTwEnd(),
+                                order.getEta(), order.getStatus(), order.getOperationType(),
+                                order.getFreightValue(), order.getFreightType(),
+                                order.getFreightWeight()));
+            } catch (SQLException e) {
+                System.err.println("Error while exporting orders: " + e.getMessage());
+                throw new InternalServerErrorException();
             }
-        }
-
-        System.out.println(
-                "Triggering notification: " + actionType + " for order ID: " + order.getOrderId());
-
-        switch (actionType.toLowerCase()) {
-            case "create":
-                notificationService.createNewOrderNotification(order.getOrder_for(),
-                                                               order.getOrderId());
-                break;
-            case "update":
-                notificationService.createUpdateOrderNotification(order.getOrder_for(),
-                                                                  order.getOrderId(), modifiedAt);
-                break;
-            case "deletion":
-                notificationService.createDeleteOrderNotification(order.getOrder_for(),
-                                                                  order.getOrderId(), modifiedAt);
-                break;
-            default:
-                System.err.println("Unknown action type: " + actionType);
-                break;
-        }
+            csv.flush();
+        };
     }
 
-
     /**
-     * Exports orders based on a specified order type, with a default limit of 100 orders.
+     * Exports orders to an XLSX workbook, reading them from the database while the sheet is
+     * written so that memory use does not grow with the number of orders.
      *
-     * @param order_for The specific purpose or type of the orders to export.
-     * @return A list of order objects matching the order_for criterion.
+     * @param order_for Only export orders for this user, or null for all visible orders.
+     * @return The workbook, written to the response when it is sent.
      */
-    public List<Order> exportOrders(String order_for) {
+    public StreamingOutput exportOrdersXlsx(String order_for) {
         Role role = (Role) requestContext.getProperty("db_role");
         String dbRequester = (String) requestContext.getProperty("username");
-        return orderDao.getFilteredOrders(role, dbRequester, null, null, null, null, null, null,
-                                          null, null, null, order_for, null, null);
+        String[] headers = {"Order ID", "Container ID", "Vehicle ID", "Requester", "Route ID",
+                "Made At", "Source", "Destination", "Is Shared", "TW Start", "TW End", "ETA",
+                "Status", "Operation Type", "Freight Value", "Freight Type", "Freight Weight",
+                "Order For"};
+        int[] widths = {10, 13, 11, 20, 10, 23, 20, 20, 10, 23, 23, 23, 12, 15, 14, 14, 15, 20};
+        return output -> {
+            try (XlsxWriter writer = new XlsxWriter("Orders Data", headers, widths)) {
+                orderDao.streamFilteredOrders(role, dbRequester, null, null, null, null, null,
+                                              null, null, null, null, order_for, null, null, null,
+                                              null, null, null, order -> writer.writeRow(
+                                order.getOrderId(), order.getContainerId(),
+                                order.getVehicleId(), order.getRequester(), order.getRouteId(),
+                                order.getMadeAt(), order.getSource(), order.getDestination(),
+                                order.getShared(), order.getTwStart(), order.getTwEnd(),
+                                order.getEta(), order.getStatus(), order.getOperationType(),
+                                order.getFreightValue(), order.getFreightType(),
+                                order.getFreightWeight(), order.getOrder_for()));
+                writer.writeTo(output);
+            } catch (SQLException e) {
+                System.err.println("Error while exporting orders: " + e.getMessage());
+                throw new InternalServerErrorException();
+            }
+        };
     }
 
     /**
@@ -453,126 +444,78 @@ public class OrderService {
 
 
     /**
-     * Activate Order.
+     * Starts and finishes every order that is due, then re-reads every order into the lifecycle
+     * scheduler. Transitions themselves are fired by {@link OrderAssignmentScheduler} at their
+     * due time, so this is only needed after the database was changed behind the application's
+     * back.
      */
     public boolean activateOrder() {
         Role role = (Role) requestContext.getProperty("db_role");
-        List<Order> allOrderList = orderDao.getAllOrdersDB(role);
-        long timestamp = Instant.now().toEpochMilli();
-        Timestamp sqlTimestamp = new Timestamp(timestamp);
-
-
-        for (Order order : allOrderList) {
-            if (order.getStatus() == OrderStatus.scheduled &&
-                    sqlTimestamp.after(order.getDepartureTime())) {
-                System.out.println("starting order");
-
-                startOrder(order);
-            } else if (order.getStatus() == OrderStatus.undergoing &&
-                    sqlTimestamp.after(order.getEta())) {
-
-                finishOrder(order);
-
-            } else if (order.getStatus().equals(OrderStatus.created)) {
-                System.out.println(order.getStatus());
-                System.out.println("created order");
-                assignmentService.orderAssignmentAfterCreated(order);
-
-            } else if (order.getStatus() == OrderStatus.canceled &&
-                    order.getDepartureTime().before(sqlTimestamp) &&
-                    order.getEta().after(sqlTimestamp)) {
-                System.out.println("status" + order.getStatus());
-
-                Vehicle vehicle = vehicleService.getVehicleByID(order.getVehicleId());
-                stopVehicle(vehicle);
-            }
-        }
+        String dbRequester = (String) requestContext.getProperty("username");
 
+        advanceDueOrders(role, dbRequester, new Timestamp(System.currentTimeMillis()));
+        vehicleAvailabilityIndex.reload();
+        containerAllocator.reload();
+        orderAssignmentScheduler.resync();
         return true;
     }
 
     /**
-     * Start order if the current time is already after the TW_START.
+     * Starts every scheduled order past its departure time and finishes every undergoing order
+     * past its ETA, together with their vehicles and containers, in one transaction. Orders
+     * that are due for both are started and finished in the same pass.
      *
-     * @param order
+     * @param role        role the vehicles, containers and orders are updated with
+     * @param dbRequester username the updates are made on behalf of, may be null
+     * @param dueBy       orders due at or before this moment are moved
+     * @return the number of orders that moved
      */
-    public void startOrder(Order order) {
-        Role role = (Role) requestContext.getProperty("db_role");
-        String dbRequester = (String) requestContext.getProperty("username");
-        order.setStatus(OrderStatus.undergoing);
-
-        if (order.getVehicleId() != null) {
-            Vehicle vehicle = vehicleService.getVehicleByID(order.getVehicleId());
-            vehicle.setStatus(VehicleStatus.in_use);
-            vehicleService.updateVehicle(vehicle.getVehicleId(), vehicle);
-        }
-
-
-        //         now we dont have container allocation yet
-        if (order.getContainerId() != null) {
-            Container container = containerService.getContainerById(order.getContainerId());
-            System.out.println(container.getContainerId());
-            container.setContainerStatus(ContainerStatus.in_use);
-            containerService.updateContainer(container.getContainerId(), container);
+    public int advanceDueOrders(Role role, String dbRequester, Timestamp dueBy) {
+        try (UnitOfWork work = new UnitOfWork(role, dbRequester)) {
+            List<Order> started = orderDao.startDueOrders(work, dueBy);
+            List<Order> finished = orderDao.finishDueOrders(work, dueBy, PORT);
+            // an order started and finished here ends up completed
+            work.afterCommit(() -> {
+                started.forEach(this::orderChanged);
+                finished.forEach(this::orderChanged);
+            });
+            work.commit();
+
+            System.out.println("[SCHEDULER] Started " + started.size() + " and finished " +
+                                       finished.size() + " due orders");
+            return started.size() + finished.size();
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
         }
-
-        orderDao.updateOrderDB(role, dbRequester, order.getOrderId(), order);
-
     }
 
-
     /**
-     * Finish order if the current time is already after the TW_END.
+     * Stop the operation of the vehicle of a canceled order.
      *
-     * @param order
+     * @param role      role the vehicle is updated with
+     * @param vehicleId the vehicle that is about to be released
      */
-    public void finishOrder(Order order) {
-        Role role = (Role) requestContext.getProperty("db_role");
-        String dbRequester = (String) requestContext.getProperty("username");
-
-        order.setStatus(OrderStatus.completed);
-
-        // Set company location to vehicle location
-        try {
-            PGpoint newLocation;
-
-            Company company = companyDao.getByUsername(role, dbRequester, order.getDestination());
-            if (company != null) { //not type of company (port)
-                newLocation = company.getLocation();
-            } else {
-                newLocation = PORT;
-            }
-
-            if (order.getVehicleId() != null) {
-                Vehicle vehicle = vehicleService.getVehicleByID(order.getVehicleId());
-                vehicle.setStatus(VehicleStatus.available);
-                vehicle.setPosition(newLocation);
-
-                vehicleService.updateVehicle(vehicle.getVehicleId(), vehicle);
-            }
-
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
+    public void stopVehicle(Role role, int vehicleId) {
+        Vehicle vehicle = vehicleDAO.getVehicleDB(role, vehicleId);
+        if (vehicle != null) {
+            vehicle.setStatus(VehicleStatus.available);
+            vehicleDAO.updateVehicleDB(role, vehicle.getVehicleId(), vehicle);
         }
-
-
-        if (order.getContainerId() != null) {
-            Container container = containerService.getContainerById(order.getContainerId());
-            container.setContainerStatus(ContainerStatus.available);
-            containerService.updateContainer(container.getContainerId(), container);
-        }
-
-        orderDao.updateOrderDB(role, dbRequester, order.getOrderId(), order);
     }
 
     /**
-     * Stop the operation of the current vehicle.
-     *
-     * @param vehicle, vehicle object that is about to be updated.
+     * Keeps the in-memory scheduling state in step with an order that was just written.
      */
-    public void stopVehicle(Vehicle vehicle) {
-        vehicle.setStatus(VehicleStatus.available);
-        vehicleService.updateVehicle(vehicle.getVehicleId(), vehicle);
+    private void orderChanged(Order order) {
+        vehicleAvailabilityIndex.update(order);
+        containerAllocator.update(order);
+        orderAssignmentScheduler.track(order);
+    }
+
+    private void orderRemoved(int orderId) {
+        vehicleAvailabilityIndex.remove(orderId);
+        containerAllocator.remove(orderId);
+        orderAssignmentScheduler.untrack(orderId);
     }
 
 
@@ -597,23 +540,24 @@ public class OrderService {
                 // Update order status to canceled
                 order.setStatus(OrderStatus.canceled);
                 orderDao.updateOrderDB(role, dbRequester, order.getOrderId(), order);
+                orderChanged(order);
 
                 // Release any assigned vehicle
                 if (order.getVehicleId() != null) {
-                    Vehicle vehicle = vehicleService.getVehicleByID(order.getVehicleId());
+                    Vehicle vehicle = vehicleDAO.getVehicleDB(role, order.getVehicleId());
                     if (vehicle != null && vehicle.getStatus() == VehicleStatus.in_use) {
                         vehicle.setStatus(VehicleStatus.available);
-                        vehicleService.updateVehicle(vehicle.getVehicleId(), vehicle);
+                        vehicleDAO.updateVehicleDB(role, vehicle.getVehicleId(), vehicle);
                     }
                 }
 
                 // Release any assigned container
                 if (order.getContainerId() != null) {
-                    Container container = containerService.getContainerById(order.getContainerId());
+                    Container container = containerDao.getById(role, order.getContainerId());
                     if (container != null &&
                             container.getContainerStatus() == ContainerStatus.in_use) {
                         container.setContainerStatus(ContainerStatus.available);
-                        containerService.updateContainer(container.getContainerId(), container);
+                        containerDao.update(role, container.getContainerId(), container);
                     }
                 }
 
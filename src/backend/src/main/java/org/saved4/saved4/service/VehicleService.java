@@ -2,17 +2,25 @@ package org.saved4.saved4.service;
 
 import jakarta.enterprise.context.RequestScoped;
 import jakarta.inject.Inject;
+import jakarta.ws.rs.InternalServerErrorException;
 import jakarta.ws.rs.container.ContainerRequestContext;
 import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.StreamingOutput;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.SQLException;
 import java.util.List;
 import org.saved4.saved4.dao.VehicleDAO;
 import org.saved4.saved4.dto.Vehicle;
 import org.saved4.saved4.enums.Role;
+import org.saved4.saved4.scheduler.VehicleAvailabilityIndex;
 
 @RequestScoped
 public class VehicleService {
     @Inject
     private VehicleDAO vehicleDAO;
+    @Inject
+    private VehicleAvailabilityIndex vehicleAvailabilityIndex;
 
     @Context
     private ContainerRequestContext requestContext;
@@ -76,7 +84,11 @@ public class VehicleService {
         Role role = (Role) requestContext.getProperty("db_role");
         System.out.println("Service: Delete Vehicle with ID: " + id);
 
-        return vehicleDAO.removeVehicleDB(role, id);
+        boolean removed = vehicleDAO.removeVehicleDB(role, id);
+        if (removed) {
+            vehicleAvailabilityIndex.removeVehicle(id);
+        }
+        return removed;
     }
 
     /**
@@ -90,20 +102,70 @@ public class VehicleService {
         Role role = (Role) requestContext.getProperty("db_role");
         System.out.println("[VEHICLE SERVICE] : Adding new vehicle");
 
-        return vehicleDAO.insertVehicleDB(role, vehicle);
+        Vehicle added = vehicleDAO.insertVehicleDB(role, vehicle);
+        if (added != null) {
+            vehicleAvailabilityIndex.addVehicle(added.getVehicleId());
+        }
+        return added;
     }
 
 
     /**
-     * Exports all vehicle data.
+     * Exports all vehicles as CSV, writing each vehicle as soon as it is read from the database.
      *
-     * @return A {@link List} of all {@link Vehicle} objects.
+     * @return The CSV file, written to the response when it is sent.
      */
-    public List<Vehicle> exportVehicles() {
+    public StreamingOutput exportVehiclesCsv() {
         Role role = (Role) requestContext.getProperty("db_role");
-        System.out.println("[VEHICLE SERVICE] : Exporting the vehicles");
+        System.out.println("[VEHICLE SERVICE] : Exporting the vehicles to csv");
+        return output -> {
+            CsvWriter csv = new CsvWriter(output);
+            csv.writeHeader("ID", "Latitude", "Longitude", "Battery Level", "Status",
+                            "Milage (km)");
+            try {
+                vehicleDAO.streamAllVehicles(role, vehicle -> csv.writeRow(
+                        "VEH_" + vehicle.getVehicleId(), coordinate(vehicle.getPosition().x),
+                        coordinate(vehicle.getPosition().y), vehicle.getBattery_level(),
+                        vehicle.getStatus().name(), vehicle.getDistance()));
+            } catch (SQLException e) {
+                System.err.println("Error while exporting vehicles: " + e.getMessage());
+                throw new InternalServerErrorException();
+            }
+            csv.flush();
+        };
+    }
 
-        return vehicleDAO.getAllVehiclesDB(role);
+    /**
+     * Exports all vehicles to an XLSX workbook, reading them from the database while the sheet
+     * is written.
+     *
+     * @return The workbook, written to the response when it is sent.
+     */
+    public StreamingOutput exportVehiclesXlsx() {
+        Role role = (Role) requestContext.getProperty("db_role");
+        System.out.println("[VEHICLE SERVICE] : Exporting the vehicles to xlsx");
+        String[] headers = {"ID", "Latitude", "Longitude", "Battery Level", "Status", "Milage (km)"};
+        int[] widths = {10, 12, 12, 14, 14, 13};
+        return output -> {
+            try (XlsxWriter writer = new XlsxWriter("Vehicles Data", headers, widths)) {
+                writer.setColumnFormat(1, "0.00000");
+                writer.setColumnFormat(2, "0.00000");
+                vehicleDAO.streamAllVehicles(role, vehicle -> writer.writeRow(
+                        "VEH_" + vehicle.getVehicleId(), vehicle.getPosition().x,
+                        vehicle.getPosition().y, vehicle.getBattery_level(),
+                        vehicle.getStatus().name(), vehicle.getDistance()));
+                writer.writeTo(output);
+            } catch (SQLException e) {
+                System.err.println("Error while exporting vehicles: " + e.getMessage());
+                throw new InternalServerErrorException();
+            }
+        };
     }
 
+    /**
+     * Rounds a coordinate to five decimals, like {@code %.5f} without going through a formatter.
+     */
+    private static String coordinate(double value) {
+        return BigDecimal.valueOf(value).setScale(5, RoundingMode.HALF_UP).toPlainString();
+    }
 }
@@ -0,0 +1,95 @@
+package org.saved4.saved4.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Writes a single-sheet XLSX export row by row in constant memory.
+ * <p>
+ * Only the last {@link #ROW_WINDOW} rows are kept in memory, older rows are flushed to a
+ * compressed temporary file that is deleted again on {@link #close()}. Column widths are fixed up
+ * front instead of measured with {@code autoSizeColumn}, and every cell of a column shares one
+ * style.
+ */
+final class XlsxWriter implements Closeable {
+    private static final int ROW_WINDOW = 100;
+
+    private final SXSSFWorkbook workbook;
+    private final Sheet sheet;
+    private final CellStyle[] columnStyles;
+    private int rowNum;
+
+    /**
+     * @param sheetName    the name of the only sheet
+     * @param headers      the column titles, written as a bold first row
+     * @param columnWidths the width of each column in characters
+     */
+    XlsxWriter(String sheetName, String[] headers, int[] columnWidths) {
+        workbook = new SXSSFWorkbook(ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        sheet = workbook.createSheet(sheetName);
+        columnStyles = new CellStyle[headers.length];
+
+        Font headerFont = workbook.createFont();
+        headerFont.setBold(true);
+        CellStyle headerStyle = workbook.createCellStyle();
+        headerStyle.setFont(headerFont);
+
+        Row headerRow = sheet.createRow(rowNum++);
+        for (int i = 0; i < headers.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(headers[i]);
+            cell.setCellStyle(headerStyle);
+            sheet.setColumnWidth(i, columnWidths[i] * 256);
+        }
+    }
+
+    /**
+     * Formats the numbers of a column with an Excel number format such as {@code "0.00000"}.
+     */
+    void setColumnFormat(int column, String format) {
+        CellStyle style = workbook.createCellStyle();
+        style.setDataFormat(workbook.createDataFormat().getFormat(format));
+        columnStyles[column] = style;
+    }
+
+    /**
+     * Appends a row. Numbers become numeric cells, null leaves the cell empty and anything else
+     * is written as text.
+     */
+    void writeRow(Object... values) {
+        Row row = sheet.createRow(rowNum++);
+        for (int i = 0; i < values.length; i++) {
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            Cell cell = row.createCell(i);
+            if (value instanceof Number) {
+                cell.setCellValue(((Number) value).doubleValue());
+            } else {
+                cell.setCellValue(value.toString());
+            }
+            if (columnStyles[i] != null) {
+                cell.setCellStyle(columnStyles[i]);
+            }
+        }
+    }
+
+    void writeTo(OutputStream output) throws IOException {
+        workbook.write(output);
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        workbook.close();
+    }
+}
@@ -0,0 +1,66 @@
+import { defineStore } from "pinia";
+import { useAuthStore } from "@/stores/auth";
+
+// One stream per tab, shared by every component that shows notifications. It is opened by the
+// first subscriber and closed when the last one leaves.
+let stream = null;
+const subscribers = new Set();
+
+function dispatch(type, event) {
+  const data = JSON.parse(event.data);
+  for (const subscriber of subscribers) {
+    if (subscriber[type]) subscriber[type](data);
+  }
+}
+
+export const useNotificationStore = defineStore("notifications", {
+  state: () => ({
+    unread: 0,
+  }),
+  actions: {
+    /**
+     * Listens to the notification stream.
+     * @param {object} listeners - Optional `notification`, `read` and `deleted` handlers,
+     * called with the parsed event data.
+     * @returns {function} Stops listening.
+     */
+    subscribe(listeners = {}) {
+      subscribers.add(listeners);
+      this.openStream();
+      return () => {
+        subscribers.delete(listeners);
+        if (subscribers.size === 0) this.closeStream();
+      };
+    },
+    openStream() {
+      if (stream) return;
+      stream = new EventSource("/api/notifications/events");
+      // (Re)connected, catch up on anything sent while the stream was closed
+      stream.onopen = () => this.fetchUnreadCount();
+      stream.addEventListener("notification", (event) => dispatch("notification", event));
+      stream.addEventListener("read", (event) => dispatch("read", event));
+      stream.addEventListener("deleted", (event) => dispatch("deleted", event));
+      stream.addEventListener("unread-count", (event) => {
+        const data = JSON.parse(event.data);
+        // admins show the total of all receivers, which their events carry
+        this.unread = useAuthStore().isUser ? data.unread : data.total;
+      });
+    },
+    closeStream() {
+      if (stream) {
+        stream.close();
+        stream = null;
+      }
+    },
+    fetchUnreadCount() {
+      return fetch("api/notifications/unread-count")
+        .then((res) => (res.ok ? res.json() : Promise.reject(new Error("Server responded with " + res.status))))
+        .then((data) => {
+          this.unread = data.unread;
+        })
+        .catch((err) => {
+          console.error("Failed to fetch unread count:", err);
+        });
+    },
+  },
+});